@@ -8,6 +8,7 @@ public class AnimalItem implements CreationItem {
     private double scale;
     private boolean flipH;
     private boolean flipV;
+    private long version;
 
     // Constructor to initialize the AnimalItem with an image
     // and default values for rotation, scale, and flip states
@@ -25,6 +26,13 @@ public class AnimalItem implements CreationItem {
         return image;
     }
 
+    // Method to replace the image, keeping the transform state
+    @Override
+    public void setImage(BufferedImage image) {
+        this.image = image;
+        this.version++;
+    }
+
     // Method to set a new image for this AnimalItem
     @Override
     public String getType() {
@@ -35,24 +43,28 @@ public class AnimalItem implements CreationItem {
     @Override
     public void rotate(double radians) {
         this.rotation += radians;
+        this.version++;
     }
 
     // Method to scale the image by a given factor
     @Override
     public void scale(double scaleFactor) {
         this.scale *= scaleFactor;
+        this.version++;
     }
 
     // Method to flip the image horizontally
     @Override
     public void flipHorizontal() {
         this.flipH = !this.flipH;
+        this.version++;
     }
 
     // Method to flip the image vertically
     @Override
     public void flipVertical() {
         this.flipV = !this.flipV;
+        this.version++;
     }
 
     // Getters for the properties of the AnimalItem
@@ -78,4 +90,10 @@ public class AnimalItem implements CreationItem {
     public boolean isFlippedV() {
         return flipV;
     }
+
+    // Method to get the version counter, bumped whenever the transform state changes
+    @Override
+    public long getVersion() {
+        return version;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,204 @@
+// Docked palette showing the animal and flower folders as a grid of thumbnails that insert into the LeftCanvas.
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+public class AssetPalette extends JPanel implements ThumbnailCache.ThumbnailListener {
+    // A folder the palette can show and the item type its images are inserted as
+    private static class Folder {
+        final String label;
+        final String path;
+        final String type;
+
+        Folder(String label, String path, String type) {
+            this.label = label;
+            this.path = path;
+            this.type = type;
+        }
+
+        @Override
+        public String toString() {
+            return label;
+        }
+    }
+
+    private static final int CELL_PADDING = 16;
+    private static final int LABEL_HEIGHT = 18;
+    private static final Color THUMBNAIL_BACKGROUND = new Color(235, 235, 235);
+
+    private final LeftCanvas leftCanvas;
+    private final ThumbnailCache cache = ThumbnailCache.getInstance();
+    private final JList<File> list = new JList<>();
+    private final Map<File, Integer> indexes = new HashMap<>();  // Lets a finished thumbnail repaint just its cell
+    // Made when a cell is first shown, so repainting it does not read the file's modification time and length again
+    private final Map<File, ThumbnailCache.Key> keys = new HashMap<>();
+    private Folder folder;
+
+    // Constructor to build the folder selector and the thumbnail grid
+    public AssetPalette(LeftCanvas leftCanvas) {
+        this.leftCanvas = leftCanvas;
+        setLayout(new BorderLayout());
+
+        JComboBox<Folder> folderBox = new JComboBox<>(new Folder[] {
+            new Folder("Animals", "animal", "animal"),
+            new Folder("Flowers", "flower", "flower")
+        });
+        folderBox.addActionListener(e -> showFolder((Folder) folderBox.getSelectedItem()));
+
+        // Fixed cell sizes let the list lay out thousands of files without measuring each cell,
+        // and it only paints, and so only asks for thumbnails of, the cells that are visible
+        int size = cache.getSize();
+        list.setLayoutOrientation(JList.HORIZONTAL_WRAP);
+        list.setVisibleRowCount(-1);
+        list.setFixedCellWidth(size + CELL_PADDING);
+        list.setFixedCellHeight(size + CELL_PADDING + LABEL_HEIGHT);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.setCellRenderer(new ThumbnailRenderer());
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                if (e.getClickCount() == 2 && SwingUtilities.isLeftMouseButton(e)) {
+                    int index = list.locationToIndex(e.getPoint());
+                    if (index >= 0 && list.getCellBounds(index, index).contains(e.getPoint())) {
+                        insert(list.getModel().getElementAt(index));
+                    }
+                }
+            }
+        });
+        list.getInputMap().put(KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0), "insertAsset");
+        list.getActionMap().put("insertAsset", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                File file = list.getSelectedValue();
+                if (file != null) insert(file);
+            }
+        });
+
+        JScrollPane scroll = new JScrollPane(list);
+        scroll.setHorizontalScrollBarPolicy(ScrollPaneConstants.HORIZONTAL_SCROLLBAR_NEVER);
+        scroll.getVerticalScrollBar().setUnitIncrement(list.getFixedCellHeight() / 2);
+        int width = (size + CELL_PADDING) * 2 + scroll.getVerticalScrollBar().getPreferredSize().width + 4;
+        setPreferredSize(new Dimension(width, 0));
+
+        add(folderBox, BorderLayout.NORTH);
+        add(scroll, BorderLayout.CENTER);
+        showFolder((Folder) folderBox.getSelectedItem());
+    }
+
+    // Method to list a folder's image files by name; only file names are read here, thumbnails load as cells are shown
+    private void showFolder(Folder folder) {
+        this.folder = folder;
+        cache.cancelPending();
+        Set<String> suffixes = new HashSet<>();
+        for (String suffix : ImageIO.getReaderFileSuffixes()) {
+            suffixes.add(suffix.toLowerCase(Locale.ROOT));
+        }
+        File[] files = new File(folder.path).listFiles((dir, name) -> {
+            int dot = name.lastIndexOf('.');
+            return dot > 0 && suffixes.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+        });
+        if (files == null) files = new File[0];
+        Arrays.sort(files, (a, b) -> a.getName().compareToIgnoreCase(b.getName()));
+
+        indexes.clear();
+        keys.clear();
+        for (int i = 0; i < files.length; i++) {
+            indexes.put(files[i], i);
+        }
+        // Replace the contents in one event, so the list lays itself out once instead of once per file
+        DefaultListModel<File> fresh = new DefaultListModel<>();
+        fresh.addAll(Arrays.asList(files));
+        list.setModel(fresh);
+        list.ensureIndexIsVisible(0);
+    }
+
+    // Method to insert a file into the LeftCanvas as the current folder's item type
+    private void insert(File file) {
+        try {
+            leftCanvas.insertImage(file, folder.type);
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(this, "Failed to load image: " + ex.getMessage());
+        }
+    }
+
+    // Method to repaint the cell of a thumbnail that finished loading, if its file is still listed; the file's key is
+    // made again for that repaint, in case the thumbnail was loaded from a newer state of the file than the key saw
+    @Override
+    public void thumbnailReady(File file, BufferedImage thumbnail) {
+        keys.remove(file);
+        Integer index = indexes.get(file);
+        if (index != null && index < list.getModel().getSize()) {
+            Rectangle cell = list.getCellBounds(index, index);
+            if (cell != null) list.repaint(cell);
+        }
+    }
+
+    // Icon centring the current cell's thumbnail in a fixed square, or filling it with a blank tile while it loads
+    private static class ThumbnailIcon implements Icon {
+        private final int size;
+        BufferedImage thumbnail;
+
+        ThumbnailIcon(int size) {
+            this.size = size;
+        }
+
+        @Override
+        public void paintIcon(Component c, Graphics g, int x, int y) {
+            if (thumbnail == null) {
+                g.setColor(THUMBNAIL_BACKGROUND);
+                g.fillRect(x, y, size, size);
+            } else {
+                g.drawImage(thumbnail, x + (size - thumbnail.getWidth()) / 2, y + (size - thumbnail.getHeight()) / 2, null);
+            }
+        }
+
+        @Override
+        public int getIconWidth() {
+            return size;
+        }
+
+        @Override
+        public int getIconHeight() {
+            return size;
+        }
+    }
+
+    // Renderer drawing a thumbnail above the file name; one label and icon are reused for every cell
+    private class ThumbnailRenderer extends JLabel implements ListCellRenderer<File> {
+        private final ThumbnailIcon icon = new ThumbnailIcon(cache.getSize());
+
+        ThumbnailRenderer() {
+            setIcon(icon);
+            setOpaque(true);
+            setHorizontalAlignment(CENTER);
+            setVerticalTextPosition(BOTTOM);
+            setHorizontalTextPosition(CENTER);
+            setBorder(BorderFactory.createEmptyBorder(CELL_PADDING / 2, 2, 2, 2));
+        }
+
+        // Method to configure the label for one visible cell
+        @Override
+        public Component getListCellRendererComponent(JList<? extends File> list, File file, int index,
+                                                      boolean isSelected, boolean cellHasFocus) {
+            icon.thumbnail = cache.getThumbnail(keys.computeIfAbsent(file, ThumbnailCache.Key::new), AssetPalette.this);
+            setText(file.getName());
+            setToolTipText(file.getName());
+            setBackground(isSelected ? list.getSelectionBackground() : list.getBackground());
+            setForeground(isSelected ? list.getSelectionForeground() : list.getForeground());
+            return this;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+// Headless command-line renderer that turns scene description files into PNG or JPEG compositions.
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.imageio.ImageIO;
+
+/*
+ * Scene files are plain text, one directive per line; blank lines and lines starting with # are ignored:
+ *
+ *   canvas <width> <height>
+ *   item <animal|flower|custom> <image path> <x> <y> [rotation=<degrees>] [scale=<factor>] [flipH] [flipV]
+ *
+ * Image paths are resolved against the scene file's folder first, then the working directory.
+ * Items are drawn in file order, so later items sit on top.
+ *
+ * Usage:
+ *   java -Djava.awt.headless=true BatchRenderer <scene.txt> [output.png|output.jpg]
+ *   java -Djava.awt.headless=true BatchRenderer --dir <scene folder> [--out <folder>] [--format png|jpg] [--threads <n>]
+ */
+public class BatchRenderer {
+    // Result of rendering one scene, used for the throughput summary
+    private static class RenderResult {
+        final File scene;
+        final int items;
+        final long pixels;
+        final long nanos;
+
+        RenderResult(File scene, int items, long pixels, long nanos) {
+            this.scene = scene;
+            this.items = items;
+            this.pixels = pixels;
+            this.nanos = nanos;
+        }
+    }
+
+    // Decoded source images shared by every scene in the run, keyed by canonical path; each is decoded once, however many threads ask
+    private final Map<String, CompletableFuture<BufferedImage>> imageCache = new ConcurrentHashMap<>();
+    private final AtomicLong imageDecodeNanos = new AtomicLong();
+
+    // Main method to parse arguments and render a single scene or a whole folder
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", "true");
+        if (args.length == 0) {
+            printUsage();
+            System.exit(2);
+        }
+
+        BatchRenderer renderer = new BatchRenderer();
+        try {
+            if (args[0].equals("--dir")) {
+                System.exit(renderer.renderDirectory(args) ? 0 : 1);
+            } else {
+                File scene = new File(args[0]);
+                File output = args.length > 1 ? new File(args[1]) : defaultOutput(scene, null, "png");
+                RenderResult result = renderer.renderScene(scene, output);
+                System.out.printf(Locale.ROOT, "Rendered %s -> %s (%d items, %.1f ms)%n",
+                    scene, output, result.items, result.nanos / 1e6);
+            }
+        } catch (IOException | IllegalArgumentException ex) {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+    // Method to print the command-line usage
+    private static void printUsage() {
+        System.err.println("Usage: java -Djava.awt.headless=true BatchRenderer <scene.txt> [output.png|output.jpg]");
+        System.err.println("       java -Djava.awt.headless=true BatchRenderer --dir <scenes> [--out <folder>] [--format png|jpg] [--threads <n>]");
+    }
+
+    // Method to render every *.txt scene in a folder in parallel and print throughput statistics
+    private boolean renderDirectory(String[] args) throws IOException {
+        File dir = null;
+        File outDir = null;
+        String format = "png";
+        int threads = Runtime.getRuntime().availableProcessors();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--dir": dir = new File(requireValue(args, ++i)); break;
+                case "--out": outDir = new File(requireValue(args, ++i)); break;
+                case "--format": format = requireValue(args, ++i).toLowerCase(Locale.ROOT); break;
+                case "--threads": threads = Integer.parseInt(requireValue(args, ++i)); break;
+                default: throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+        if (dir == null || !dir.isDirectory()) {
+            throw new IOException("Scene folder not found: " + dir);
+        }
+        if (!format.equals("png") && !format.equals("jpg")) {
+            throw new IllegalArgumentException("Format must be png or jpg");
+        }
+        if (outDir != null && !outDir.isDirectory() && !outDir.mkdirs()) {
+            throw new IOException("Cannot create output folder: " + outDir);
+        }
+
+        File[] scenes = dir.listFiles((d, name) -> name.toLowerCase(Locale.ROOT).endsWith(".txt"));
+        if (scenes == null || scenes.length == 0) {
+            System.out.println("No scene files in " + dir);
+            return true;
+        }
+        Arrays.sort(scenes);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        long start = System.nanoTime();
+        List<Future<RenderResult>> futures = new ArrayList<>();
+        for (File scene : scenes) {
+            File output = defaultOutput(scene, outDir, format);
+            futures.add(pool.submit(() -> renderScene(scene, output)));
+        }
+
+        List<RenderResult> results = new ArrayList<>();
+        int failures = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                results.add(futures.get(i).get());
+            } catch (Exception ex) {
+                failures++;
+                Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                System.err.println("Failed " + scenes[i].getName() + ": " + cause.getMessage());
+            }
+        }
+        pool.shutdown();
+        long wallNanos = System.nanoTime() - start;
+
+        printStats(results, failures, wallNanos, threads);
+        return failures == 0;
+    }
+
+    // Method to print scenes per second, pixel throughput and per-scene latency for a run
+    private void printStats(List<RenderResult> results, int failures, long wallNanos, int threads) {
+        long items = 0;
+        long pixels = 0;
+        long sceneNanos = 0;
+        long slowest = 0;
+        for (RenderResult r : results) {
+            items += r.items;
+            pixels += r.pixels;
+            sceneNanos += r.nanos;
+            slowest = Math.max(slowest, r.nanos);
+        }
+        double seconds = wallNanos / 1e9;
+        System.out.printf(Locale.ROOT, "Rendered %d scenes (%d failed) on %d threads in %.2f s%n",
+            results.size(), failures, threads, seconds);
+        if (!results.isEmpty()) {
+            System.out.printf(Locale.ROOT, "  %.1f scenes/s, %.1f items/s, %.1f MPix/s%n",
+                results.size() / seconds, items / seconds, pixels / 1e6 / seconds);
+            System.out.printf(Locale.ROOT, "  per scene: %.1f ms average, %.1f ms slowest; image decoding %.1f ms total%n",
+                sceneNanos / 1e6 / results.size(), slowest / 1e6, imageDecodeNanos.get() / 1e6);
+        }
+    }
+
+    // Method to get the value following an option, failing if it is missing
+    private static String requireValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    // Method to derive an output file next to the scene or in the output folder
+    private static File defaultOutput(File scene, File outDir, String format) {
+        String name = scene.getName();
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        File folder = outDir != null ? outDir : scene.getAbsoluteFile().getParentFile();
+        return new File(folder, base + "." + format);
+    }
+
+    // Method to render one scene file and encode it by the output extension. The scene goes straight into a SceneStore and
+    // renders through a canvas snapshot, so no Swing component is built and nothing from it stays in the shared sprite cache
+    RenderResult renderScene(File sceneFile, File output) throws IOException {
+        long start = System.nanoTime();
+        SceneStore<Void> store = new SceneStore<>();
+        Dimension size = new Dimension(LeftCanvas.DEFAULT_CANVAS_WIDTH, LeftCanvas.DEFAULT_CANVAS_HEIGHT);
+        int items = loadScene(sceneFile, store, size);
+
+        String format = output.getName().toLowerCase(Locale.ROOT).endsWith(".jpg")
+            || output.getName().toLowerCase(Locale.ROOT).endsWith(".jpeg") ? "jpg" : "png";
+        // Poster-sized scenes render in parallel tiles and stream to the encoder; JPEGs are rendered opaque
+        LeftCanvas.Snapshot snapshot = new LeftCanvas.Snapshot(size, store.snapshot());
+        ImageSaver.write(snapshot.createImage(format), format, output, "BatchRenderer", null);
+        return new RenderResult(sceneFile, items, (long) size.width * size.height, System.nanoTime() - start);
+    }
+
+    // Method to parse a scene file into a store and the canvas size, returning the number of items placed
+    private int loadScene(File sceneFile, SceneStore<Void> store, Dimension size) throws IOException {
+        File baseDir = sceneFile.getAbsoluteFile().getParentFile();
+        int items = 0;
+        int lineNumber = 0;
+        try (BufferedReader reader = Files.newBufferedReader(sceneFile.toPath())) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                try {
+                    switch (parts[0].toLowerCase(Locale.ROOT)) {
+                        case "canvas":
+                            size.setSize(Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                            if (size.width <= 0 || size.height <= 0) {
+                                throw new IllegalArgumentException("canvas size must be positive");
+                            }
+                            break;
+                        case "item":
+                            store.add(parseItem(parts, baseDir), Double.parseDouble(parts[3]), Double.parseDouble(parts[4]), null);
+                            items++;
+                            break;
+                        default:
+                            throw new IllegalArgumentException("unknown directive '" + parts[0] + "'");
+                    }
+                } catch (ArrayIndexOutOfBoundsException | IllegalArgumentException ex) {
+                    String reason = ex instanceof ArrayIndexOutOfBoundsException ? "missing arguments" : ex.getMessage();
+                    throw new IOException(sceneFile.getName() + ":" + lineNumber + ": " + reason);
+                }
+            }
+        }
+        return items;
+    }
+
+    // Method to build a transformed CreationItem from the arguments of an item directive
+    private CreationItem parseItem(String[] parts, File baseDir) throws IOException {
+        CreationItem item = LeftCanvas.createItem(loadImage(parts[2], baseDir), parts[1]);
+        for (int i = 5; i < parts.length; i++) {
+            String option = parts[i];
+            if (option.equalsIgnoreCase("flipH")) {
+                item.flipHorizontal();
+            } else if (option.equalsIgnoreCase("flipV")) {
+                item.flipVertical();
+            } else if (option.startsWith("rotation=")) {
+                item.rotate(Math.toRadians(Double.parseDouble(option.substring("rotation=".length()))));
+            } else if (option.startsWith("scale=")) {
+                item.scale(Double.parseDouble(option.substring("scale=".length())));
+            } else {
+                throw new IllegalArgumentException("unknown item option '" + option + "'");
+            }
+        }
+        return item;
+    }
+
+    // Method to decode a source image once per run and share it between scenes and threads
+    private BufferedImage loadImage(String path, File baseDir) throws IOException {
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            File relative = new File(baseDir, path);
+            file = relative.exists() ? relative : file;
+        }
+        String key = file.getCanonicalPath();
+        // The first thread to ask for a path decodes it; threads asking meanwhile wait for that decode instead of repeating it
+        CompletableFuture<BufferedImage> created = new CompletableFuture<>();
+        CompletableFuture<BufferedImage> cached = imageCache.putIfAbsent(key, created);
+        if (cached == null) {
+            try {
+                created.complete(decodeImage(file, path));
+            } catch (IOException | RuntimeException ex) {
+                created.completeExceptionally(ex);
+            }
+            cached = created;
+        }
+        try {
+            return cached.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof IOException) throw (IOException) ex.getCause();
+            throw ex;
+        }
+    }
+
+    // Method to decode and import a source image, recording the time taken for the run's statistics
+    private BufferedImage decodeImage(File file, String path) throws IOException {
+        long start = System.nanoTime();
+        StudioEvents.Decode event = new StudioEvents.Decode();
+        event.begin();
+        BufferedImage image = ImageIO.read(file);
+        if (image == null) {
+            throw new IOException("Unsupported image format: " + path);
+        }
+        image = ImageImporter.importImage(image);
+        imageDecodeNanos.addAndGet(System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            int dot = file.getName().lastIndexOf('.');
+            event.format = dot > 0 ? file.getName().substring(dot + 1).toLowerCase(Locale.ROOT) : "";
+            event.sourceWidth = image.getWidth();
+            event.sourceHeight = image.getHeight();
+            event.subsampling = 1;
+            event.bytes = file.length();
+            event.outcome = "completed";
+            event.commit();
+        }
+        return image;
+    }
+}
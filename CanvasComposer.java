@@ -4,15 +4,11 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.File;
-import java.io.IOException;
-import javax.imageio.ImageIO;
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
-import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 
 public class CanvasComposer {
@@ -23,6 +19,8 @@ public class CanvasComposer {
         // Capture the canvas as a BufferedImage
         BufferedImage[] imageHolder = new BufferedImage[1];
         imageHolder[0] = canvas.captureCanvas();
+        // Clockwise quarter turns applied so far; the pixels are only rotated once, when the image is saved
+        int[] quarterTurns = {0};
 
         // Create a JFrame to display the composed canvas
         JFrame frame = new JFrame("Composed Canvas");
@@ -33,10 +31,14 @@ public class CanvasComposer {
             @Override
             protected void paintComponent(Graphics g) {
                 super.paintComponent(g);
-                g.drawImage(imageHolder[0], 0, 0, null);
+                // Quarter turns map pixels exactly onto pixels, so the preview can rotate while drawing
+                Graphics2D g2 = (Graphics2D) g.create();
+                g2.transform(RasterRotator.getTransform(quarterTurns[0], imageHolder[0].getWidth(), imageHolder[0].getHeight()));
+                g2.drawImage(imageHolder[0], 0, 0, null);
+                g2.dispose();
             }
         };
-        imagePanel.setPreferredSize(new Dimension(imageHolder[0].getWidth(), imageHolder[0].getHeight()));
+        imagePanel.setPreferredSize(getRotatedSize(imageHolder[0], quarterTurns[0]));
 
         // Save button
         JButton saveButton = new JButton("Save Composed Canvas");
@@ -44,20 +46,18 @@ public class CanvasComposer {
             JFileChooser fileChooser = new JFileChooser();
             if (fileChooser.showSaveDialog(frame) == JFileChooser.APPROVE_OPTION) {
                 File file = fileChooser.getSelectedFile();
-                try {
-                    ImageIO.write(imageHolder[0], "PNG", file);
-                    JOptionPane.showMessageDialog(frame, "Canvas saved successfully!");
-                } catch (IOException ex) {
-                    JOptionPane.showMessageDialog(frame, "Failed to save canvas: " + ex.getMessage());
-                }
+                // The composed image is never drawn on, so it is its own snapshot; rotating and encoding run in the background
+                BufferedImage image = imageHolder[0];
+                int turns = quarterTurns[0];
+                ImageSaver.start(frame, file, "png", "Composer", () -> turns == 0 ? image : RasterRotator.rotate(image, turns));
             }
         });
 
         // Rotate button
         JButton rotateButton = new JButton("Rotate 90°");
         rotateButton.addActionListener(e -> {
-            imageHolder[0] = rotateImage90(imageHolder[0]);
-            imagePanel.setPreferredSize(new Dimension(imageHolder[0].getWidth(), imageHolder[0].getHeight()));
+            quarterTurns[0] = (quarterTurns[0] + 1) % 4;
+            imagePanel.setPreferredSize(getRotatedSize(imageHolder[0], quarterTurns[0]));
             frame.pack();
             imagePanel.repaint();
         });
@@ -74,18 +74,10 @@ public class CanvasComposer {
         frame.setVisible(true);
     }
 
-    // Utility method to rotate a BufferedImage by 90 degrees clockwise
-    private static BufferedImage rotateImage90(BufferedImage src) {
-        int w = src.getWidth();
-        int h = src.getHeight();
-        BufferedImage dest = new BufferedImage(h, w, src.getType());
-        Graphics2D g2 = dest.createGraphics();
-        AffineTransform at = new AffineTransform();
-        at.translate(h / 2.0, w / 2.0);
-        at.rotate(Math.toRadians(90));
-        at.translate(-w / 2.0, -h / 2.0);
-        g2.drawRenderedImage(src, at);
-        g2.dispose();
-        return dest;
+    // Utility method to get the size of an image after some clockwise quarter turns
+    private static Dimension getRotatedSize(BufferedImage image, int quarterTurns) {
+        return quarterTurns % 2 == 0
+            ? new Dimension(image.getWidth(), image.getHeight())
+            : new Dimension(image.getHeight(), image.getWidth());
     }
 }
\ No newline at end of file
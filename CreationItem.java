@@ -3,6 +3,7 @@ import java.awt.image.BufferedImage;
 
 public interface CreationItem {
     BufferedImage getImage();
+    void setImage(BufferedImage image);     // Replaces the pixels, e.g. when a background decode finishes
     String getType();
     void rotate(double radians);
     void scale(double scaleFactor);
@@ -12,4 +13,5 @@ public interface CreationItem {
     double getScale();
     boolean isFlippedH();
     boolean isFlippedV();
+    long getVersion();      // Incremented on every rotate, scale or flip so callers can cache derived geometry
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+// Undo and redo log of reversible edits, trimmed from the oldest end to stay within a memory budget.
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+public class EditHistory {
+    // A change that can be reverted and applied again; each edit records only what it changed
+    public interface Edit {
+        void undo();
+        void redo();
+        long getBytes();        // Approximate memory the edit keeps alive, counted against the budget
+
+        // Method called once the edit leaves the history for good, to let go of anything it kept alive
+        default void discard() {
+        }
+    }
+
+    private final ArrayDeque<Edit> undoStack = new ArrayDeque<>();
+    private final ArrayDeque<Edit> redoStack = new ArrayDeque<>();
+    private final long budgetBytes;
+    private long usedBytes = 0;
+
+    // Constructor to create a history that keeps as many edits as fit the given budget in bytes
+    public EditHistory(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Method to record an edit that has already been applied; it drops anything that could be redone
+    public void add(Edit edit) {
+        clearRedo();
+        undoStack.push(edit);
+        usedBytes += edit.getBytes();
+        // The newest edit always stays, even if it alone is over budget
+        while (usedBytes > budgetBytes && undoStack.size() > 1) {
+            Edit oldest = undoStack.removeLast();
+            usedBytes -= oldest.getBytes();
+            oldest.discard();
+        }
+    }
+
+    // Method to revert the newest edit; returns false if there is nothing to undo
+    public boolean undo() {
+        Edit edit = undoStack.poll();
+        if (edit == null) return false;
+        edit.undo();
+        redoStack.push(edit);
+        return true;
+    }
+
+    // Method to apply the most recently undone edit again; returns false if there is nothing to redo
+    public boolean redo() {
+        Edit edit = redoStack.poll();
+        if (edit == null) return false;
+        edit.redo();
+        undoStack.push(edit);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    // Method to get the number of edits that can be undone
+    public int getUndoCount() {
+        return undoStack.size();
+    }
+
+    // Method to get the approximate memory held by every edit in the history
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    // Method to drop every edit, discarding each one
+    public void clear() {
+        clearRedo();
+        for (Edit edit : undoStack) {
+            edit.discard();
+        }
+        undoStack.clear();
+        usedBytes = 0;
+    }
+
+    // Method to forget edits that can no longer be replayed, such as those of an item whose image failed to load; they are not discarded
+    public void removeIf(Predicate<Edit> filter) {
+        removeIf(undoStack, filter);
+        removeIf(redoStack, filter);
+    }
+
+    // Method to drop and discard every edit that could be redone
+    private void clearRedo() {
+        for (Edit edit : redoStack) {
+            usedBytes -= edit.getBytes();
+            edit.discard();
+        }
+        redoStack.clear();
+    }
+
+    // Method to remove matching edits from one stack, keeping the byte count in step
+    private void removeIf(ArrayDeque<Edit> stack, Predicate<Edit> filter) {
+        Iterator<Edit> it = stack.iterator();
+        while (it.hasNext()) {
+            Edit edit = it.next();
+            if (filter.test(edit)) {
+                usedBytes -= edit.getBytes();
+                it.remove();
+            }
+        }
+    }
+}
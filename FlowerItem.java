@@ -7,6 +7,7 @@ public class FlowerItem implements CreationItem {
     private double scale;
     private boolean flipH;
     private boolean flipV;
+    private long version;
 
     // Constructor to initialize the FlowerItem with an image
     public FlowerItem(BufferedImage image) {
@@ -23,6 +24,13 @@ public class FlowerItem implements CreationItem {
         return image;
     }
 
+    // Method to replace the image, keeping the transform state
+    @Override
+    public void setImage(BufferedImage image) {
+        this.image = image;
+        this.version++;
+    }
+
     // Method to set a new image for this FlowerItem
     @Override
     public String getType() {
@@ -33,24 +41,28 @@ public class FlowerItem implements CreationItem {
     @Override
     public void rotate(double radians) {
         this.rotation += radians;
+        this.version++;
     }
 
     // Method to scale the image by a given factor
     @Override
     public void scale(double scaleFactor) {
         this.scale *= scaleFactor;
+        this.version++;
     }
 
     // Method to flip the image horizontally
     @Override
     public void flipHorizontal() {
         this.flipH = !this.flipH;
+        this.version++;
     }
 
     // Method to flip the image vertically
     @Override
     public void flipVertical() {
         this.flipV = !this.flipV;
+        this.version++;
     }
 
     // Getters for the properties of the FlowerItem
@@ -76,4 +88,10 @@ public class FlowerItem implements CreationItem {
     public boolean isFlippedV() {
         return flipV;
     }
+
+    // Method to get the version counter, bumped whenever the transform state changes
+    @Override
+    public long getVersion() {
+        return version;
+    }
 }
\ No newline at end of file
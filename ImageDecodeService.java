@@ -0,0 +1,371 @@
+// Background image decoding with a bounded executor, a sized placeholder and progressive updates delivered on the EDT.
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.event.IIOReadUpdateListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+
+public class ImageDecodeService {
+    // Callbacks for a decode; all of them run on the Event Dispatch Thread and none run after cancel()
+    public interface DecodeListener {
+        void progress(BufferedImage partial);
+        void completed(BufferedImage image);
+        void failed(Exception ex);
+    }
+
+    // Handle for a decode in flight, holding the placeholder the decoder is filling in
+    public static class DecodeTask {
+        private final BufferedImage placeholder;
+        private final ImageReader reader;
+        private final int sourceWidth;
+        private final int sourceHeight;
+        private final int subsampling;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private volatile boolean done = false;
+        private volatile DecodeListener listener;
+
+        DecodeTask(BufferedImage placeholder, ImageReader reader, int sourceWidth, int sourceHeight, int subsampling) {
+            this.placeholder = placeholder;
+            this.reader = reader;
+            this.sourceWidth = sourceWidth;
+            this.sourceHeight = sourceHeight;
+            this.subsampling = subsampling;
+        }
+
+        // Method to get the placeholder, sized like the final image and refined as decoding progresses
+        public BufferedImage getPlaceholder() {
+            return placeholder;
+        }
+
+        // Method to stop the decode; the listener receives no further callbacks
+        public void cancel() {
+            // A queued task still runs far enough to see the flag and release its reader and stream
+            if (cancelled.compareAndSet(false, true)) {
+                try {
+                    reader.abort();
+                } catch (IllegalStateException ex) {
+                    // The JPEG reader refuses calls from other threads mid-read; the decode thread aborts itself instead
+                }
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+
+        // Method to attach the listener after the placeholder has been used; safe on the EDT, where every callback runs
+        public void setListener(DecodeListener listener) {
+            this.listener = listener;
+        }
+
+        // Method to get the full width of the image in the file, before subsampling
+        public int getSourceWidth() {
+            return sourceWidth;
+        }
+
+        // Method to get the full height of the image in the file, before subsampling
+        public int getSourceHeight() {
+            return sourceHeight;
+        }
+
+        // Method to get the factor the decode keeps one pixel in, along each axis
+        public int getSubsampling() {
+            return subsampling;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    private static final int QUEUE_CAPACITY = 32;               // Decodes allowed to wait before new ones are rejected
+    private static final long PROGRESS_INTERVAL_NANOS = 100_000_000L;  // Minimum gap between progress callbacks
+    private static final Color PLACEHOLDER_COLOR = new Color(225, 225, 225);
+    private static final ImageDecodeService INSTANCE = new ImageDecodeService();
+
+    private final ThreadPoolExecutor executor;
+    private final Deque<Runnable> parked = new ArrayDeque<>();  // Queued decodes that did not fit the executor queue
+    // Kept as counters so the depth can be read without taking the parked lock or the executor's locks
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger running = new AtomicInteger();
+
+    // Constructor to create the bounded pool of daemon decode threads
+    private ImageDecodeService() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY), r -> {
+                Thread t = new Thread(r, "image-decode");
+                t.setDaemon(true);
+                return t;
+            });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    // Method to get the shared decode service
+    public static ImageDecodeService getInstance() {
+        return INSTANCE;
+    }
+
+    // Method to get the number of decodes waiting for a thread, without locking
+    public int getQueueDepth() {
+        return waiting.get();
+    }
+
+    // Method to get the number of decodes currently running, without locking
+    public int getActiveCount() {
+        return running.get();
+    }
+
+    // Method to read the image header on the caller's thread and decode the full image in the background
+    public DecodeTask decode(File file, DecodeListener listener) throws IOException {
+        return decode(file, null, listener);
+    }
+
+    // Method to decode an image that will be shown fitted inside targetSize, skipping source pixels it does not need
+    public DecodeTask decode(File file, Dimension targetSize, DecodeListener listener) throws IOException {
+        ImageInputStream stream = ImageIO.createImageInputStream(file);
+        if (stream == null) {
+            throw new IOException("Cannot open " + file.getName());
+        }
+        return decode(stream, targetSize, listener);
+    }
+
+    // Method to decode an image from an open stream, which the service closes once the decode ends; listener may be set later
+    public DecodeTask decode(ImageInputStream stream, Dimension targetSize, DecodeListener listener) throws IOException {
+        return start(stream, targetSize, listener, false);
+    }
+
+    // Method to decode like decode(stream, ...), but wait for a free slot instead of failing when the queue is full
+    public DecodeTask decodeQueued(ImageInputStream stream, Dimension targetSize, DecodeListener listener) throws IOException {
+        return start(stream, targetSize, listener, true);
+    }
+
+    // Method to read the header, create the placeholder and hand the decode to the executor or park it
+    private DecodeTask start(ImageInputStream stream, Dimension targetSize, DecodeListener listener, boolean park) throws IOException {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+        if (!readers.hasNext()) {
+            stream.close();
+            throw new IOException("Unsupported image format.");
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(stream, true, true);
+
+        DecodeTask task;
+        ImageReadParam param;
+        try {
+            // Only the header is read here, so the placeholder can be placed immediately
+            int sourceWidth = reader.getWidth(0);
+            int sourceHeight = reader.getHeight(0);
+            int subsampling = getSubsampling(sourceWidth, sourceHeight, targetSize);
+            int width = (sourceWidth + subsampling - 1) / subsampling;
+            int height = (sourceHeight + subsampling - 1) / subsampling;
+            ImageTypeSpecifier type = reader.getImageTypes(0).next();
+            BufferedImage placeholder = type.createBufferedImage(width, height);
+            Graphics2D g2 = placeholder.createGraphics();
+            g2.setColor(PLACEHOLDER_COLOR);
+            g2.fillRect(0, 0, width, height);
+            g2.dispose();
+
+            param = reader.getDefaultReadParam();
+            param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+            param.setDestination(placeholder);
+            task = new DecodeTask(placeholder, reader, sourceWidth, sourceHeight, subsampling);
+            task.listener = listener;
+        } catch (IOException | RuntimeException ex) {
+            reader.dispose();
+            stream.close();
+            throw ex;
+        }
+
+        final DecodeTask decodeTask = task;
+        final ImageReadParam readParam = param;
+        Runnable job = () -> {
+            waiting.decrementAndGet();
+            running.incrementAndGet();
+            try {
+                run(decodeTask, stream, readParam);
+            } finally {
+                running.decrementAndGet();
+            }
+        };
+        waiting.incrementAndGet();
+        if (park) {
+            synchronized (parked) {
+                parked.addLast(job);
+            }
+            // The decodes that filled the queue may all have finished already, so try to start it now
+            startParked();
+            return task;
+        }
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException ex) {
+            waiting.decrementAndGet();
+            reader.dispose();
+            stream.close();
+            throw new IOException("Too many images are already loading; try again shortly.");
+        }
+        return task;
+    }
+
+    // Method to run a short job that reads a file, such as hashing it, on the decode threads once one is free
+    public void execute(Runnable job) {
+        synchronized (parked) {
+            parked.addLast(() -> {
+                try {
+                    job.run();
+                } finally {
+                    startParked();
+                }
+            });
+        }
+        startParked();
+    }
+
+    // Method to move parked decodes into the executor queue while it has room
+    private void startParked() {
+        synchronized (parked) {
+            while (!parked.isEmpty()) {
+                try {
+                    executor.execute(parked.peekFirst());
+                } catch (RejectedExecutionException ex) {
+                    return;
+                }
+                parked.pollFirst();
+            }
+        }
+    }
+
+    // Method to get the largest subsampling that still leaves at least the resolution of the fitted target
+    static int getSubsampling(int width, int height, Dimension targetSize) {
+        if (targetSize == null || targetSize.width <= 0 || targetSize.height <= 0) return 1;
+        double fit = Math.min((double) targetSize.width / width, (double) targetSize.height / height);
+        return fit >= 1 ? 1 : Math.max(1, (int) Math.floor(1 / fit));
+    }
+
+    // Method to decode into the placeholder, posting throttled progress and the final result to the EDT
+    private void run(DecodeTask task, ImageInputStream stream, ImageReadParam param) {
+        ImageReader reader = task.reader;
+        AtomicBoolean progressPending = new AtomicBoolean(false);
+        long[] lastProgress = {System.nanoTime()};
+        reader.addIIOReadUpdateListener(new IIOReadUpdateListener() {
+            @Override
+            public void imageUpdate(ImageReader source, BufferedImage theImage, int minX, int minY,
+                                    int width, int height, int periodX, int periodY, int[] bands) {
+                if (task.isCancelled()) {
+                    source.abort();
+                    return;
+                }
+                long now = System.nanoTime();
+                if (now - lastProgress[0] < PROGRESS_INTERVAL_NANOS || !progressPending.compareAndSet(false, true)) {
+                    return;
+                }
+                lastProgress[0] = now;
+                SwingUtilities.invokeLater(() -> {
+                    progressPending.set(false);
+                    DecodeListener listener = task.listener;
+                    if (!task.isCancelled() && listener != null) listener.progress(task.placeholder);
+                });
+            }
+
+            @Override
+            public void passStarted(ImageReader source, BufferedImage theImage, int pass, int minPass, int maxPass,
+                                    int minX, int minY, int periodX, int periodY, int[] bands) {
+            }
+
+            @Override
+            public void passComplete(ImageReader source, BufferedImage theImage) {
+            }
+
+            @Override
+            public void thumbnailPassStarted(ImageReader source, BufferedImage theThumbnail, int pass, int minPass,
+                                             int maxPass, int minX, int minY, int periodX, int periodY, int[] bands) {
+            }
+
+            @Override
+            public void thumbnailUpdate(ImageReader source, BufferedImage theThumbnail, int minX, int minY,
+                                        int width, int height, int periodX, int periodY, int[] bands) {
+            }
+
+            @Override
+            public void thumbnailPassComplete(ImageReader source, BufferedImage theThumbnail) {
+            }
+        });
+
+        StudioEvents.Decode event = new StudioEvents.Decode();
+        event.begin();
+        String outcome = "cancelled";
+        try {
+            if (task.isCancelled()) return;
+            BufferedImage decoded = reader.read(0, param);
+            if (task.isCancelled()) return;
+            BufferedImage result = ImageImporter.importImage(decoded);
+            outcome = "completed";
+            task.done = true;
+            SwingUtilities.invokeLater(() -> {
+                DecodeListener listener = task.listener;
+                if (!task.isCancelled() && listener != null) listener.completed(result);
+            });
+        } catch (Exception ex) {
+            task.done = true;
+            if (task.isCancelled()) return;
+            outcome = "failed";
+            SwingUtilities.invokeLater(() -> {
+                DecodeListener listener = task.listener;
+                if (!task.isCancelled() && listener != null) listener.failed(ex);
+            });
+        } finally {
+            if (event.shouldCommit()) {
+                event.format = getFormatName(reader);
+                event.sourceWidth = task.sourceWidth;
+                event.sourceHeight = task.sourceHeight;
+                event.subsampling = task.subsampling;
+                event.bytes = getBytesRead(stream);
+                event.outcome = outcome;
+                event.commit();
+            }
+            reader.dispose();
+            try {
+                stream.close();
+            } catch (IOException ignored) {
+                // Nothing useful to report once the decode has finished
+            }
+            startParked();
+        }
+    }
+
+    // Method to get the name of the format a reader decodes, for the decode event
+    private static String getFormatName(ImageReader reader) {
+        try {
+            return reader.getFormatName();
+        } catch (IOException ex) {
+            return "";
+        }
+    }
+
+    // Method to get how far a decode read into its stream, which is the file size once the whole image is read
+    private static long getBytesRead(ImageInputStream stream) {
+        try {
+            return stream.getStreamPosition();
+        } catch (IOException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+// Import stage that converts decoded images once into display-compatible rasters so blits stay on Java2D's fast loops.
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.GraphicsEnvironment;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public class ImageImporter {
+    // Timing for a single import: how long conversion took and how much faster the result blits
+    public static class ImportReport {
+        final int width;
+        final int height;
+        final int sourceType;
+        final int targetType;
+        final long conversionNanos;
+        final double blitSpeedup;
+
+        ImportReport(int width, int height, int sourceType, int targetType, long conversionNanos, double blitSpeedup) {
+            this.width = width;
+            this.height = height;
+            this.sourceType = sourceType;
+            this.targetType = targetType;
+            this.conversionNanos = conversionNanos;
+            this.blitSpeedup = blitSpeedup;
+        }
+
+        public long getConversionNanos() {
+            return conversionNanos;
+        }
+
+        public double getBlitSpeedup() {
+            return blitSpeedup;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%dx%d type %d -> %d: converted in %.2f ms, blits %.1fx faster",
+                width, height, sourceType, targetType, conversionNanos / 1e6, blitSpeedup);
+        }
+    }
+
+    private static final int SAMPLE_SIZE = 256;     // Side of the region blitted when measuring the speedup
+    private static final int SAMPLE_ROUNDS = 3;
+
+    // Originals kept only where conversion to a premultiplied raster would lose precision that export needs
+    private static final Map<BufferedImage, BufferedImage> ORIGINALS = Collections.synchronizedMap(new WeakHashMap<>());
+    private static volatile ImportReport lastReport;
+    private static volatile boolean diagnostics = false;   // Timing the blits costs more than the conversion, so only while shown
+
+    // Method to convert a decoded image to the fastest raster for the current display, returning it unchanged if already compatible
+    public static BufferedImage importImage(BufferedImage src) {
+        if (src == null) return null;
+
+        if (isCompatible(src)) return src;
+
+        long start = System.nanoTime();
+        BufferedImage converted = createTarget(src.getWidth(), src.getHeight(), src.getTransparency());
+        Graphics2D g2 = converted.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.drawImage(src, 0, 0, null);
+        g2.dispose();
+        long conversionNanos = System.nanoTime() - start;
+
+        if (converted.isAlphaPremultiplied() && !src.isAlphaPremultiplied() && src.getTransparency() == Transparency.TRANSLUCENT) {
+            ORIGINALS.put(converted, src);
+        }
+
+        if (diagnostics) {
+            double speedup = (double) measureBlit(src) / Math.max(1, measureBlit(converted));
+            lastReport = new ImportReport(src.getWidth(), src.getHeight(), src.getType(), converted.getType(), conversionNanos, speedup);
+        }
+        return converted;
+    }
+
+    // Method to get the image export should draw from: the retained original if one was kept, otherwise the image itself.
+    // The original is drawn like a sprite would be, bilinear from its nearest mipmap level, so exports match the screen
+    public static BufferedImage getExportSource(BufferedImage image) {
+        BufferedImage original = ORIGINALS.get(image);
+        return original != null ? original : image;
+    }
+
+    // Method to check whether an imported image kept its original for export
+    public static boolean hasExportSource(BufferedImage image) {
+        return ORIGINALS.containsKey(image);
+    }
+
+    // Method to get the report for the most recent conversion made with diagnostics on, or null if there has been none
+    public static ImportReport getLastReport() {
+        return lastReport;
+    }
+
+    // Method to turn timing of conversions on or off; the performance overlay turns it on while it is shown
+    public static void setDiagnosticsEnabled(boolean enabled) {
+        diagnostics = enabled;
+    }
+
+    // Method to check whether an image already uses the raster layout importImage would produce
+    static boolean isCompatible(BufferedImage image) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return image.getType() == BufferedImage.TYPE_INT_ARGB_PRE;
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice().getDefaultConfiguration();
+        return image.getType() != BufferedImage.TYPE_CUSTOM && gc.getColorModel(image.getTransparency()).equals(image.getColorModel());
+    }
+
+    // Method to create the target raster, premultiplied ARGB when there is no screen to be compatible with
+    static BufferedImage createTarget(int width, int height, int transparency) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        GraphicsConfiguration gc = GraphicsEnvironment.getLocalGraphicsEnvironment()
+            .getDefaultScreenDevice().getDefaultConfiguration();
+        return gc.createCompatibleImage(width, height, transparency);
+    }
+
+    // Method to time blitting a sample region of an image into a compatible target
+    private static long measureBlit(BufferedImage image) {
+        int w = Math.min(SAMPLE_SIZE, image.getWidth());
+        int h = Math.min(SAMPLE_SIZE, image.getHeight());
+        BufferedImage target = createTarget(w, h, Transparency.TRANSLUCENT);
+        Graphics2D g2 = target.createGraphics();
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < SAMPLE_ROUNDS; i++) {
+            long start = System.nanoTime();
+            g2.drawImage(image, 0, 0, w, h, 0, 0, w, h, null);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        g2.dispose();
+        return best;
+    }
+}
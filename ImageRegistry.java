@@ -0,0 +1,339 @@
+// Registry that interns decoded image files so every item showing the same content shares one raster.
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ImageRegistry {
+    // What is known about a file at a given modification time, so unchanged files are not read or hashed again
+    private static class FileRecord {
+        final long lastModified;
+        final long length;
+        final int width;
+        final int height;
+        String contentHash;     // Null until the hash, computed on a decode thread, comes back
+
+        FileRecord(long lastModified, long length, int width, int height) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    // A shared image, still decoding while task is set, and the listeners waiting for it
+    private static class Entry implements ImageDecodeService.DecodeListener {
+        final String key;
+        final String path;
+        final FileRecord record;
+        final String name;
+        final int subsampling;
+        final BufferedImage placeholder;
+        BufferedImage image;
+        ImageDecodeService.DecodeTask task;
+        String contentKey;      // Set once the file's hash is known and no other entry had the same content
+        final List<ImageDecodeService.DecodeListener> listeners = new ArrayList<>();
+        int references = 0;
+
+        Entry(String key, String path, FileRecord record, String name, int subsampling, ImageDecodeService.DecodeTask task) {
+            this.key = key;
+            this.path = path;
+            this.record = record;
+            this.name = name;
+            this.subsampling = subsampling;
+            this.task = task;
+            this.placeholder = task.getPlaceholder();
+            this.image = placeholder;
+        }
+
+        // Method to get the approximate memory held by the image
+        long getBytes() {
+            return (long) image.getWidth() * image.getHeight() * 4;
+        }
+
+        // Method to pass decoded rows on to every waiting item
+        @Override
+        public void progress(BufferedImage partial) {
+            for (ImageDecodeService.DecodeListener listener : new ArrayList<>(listeners)) {
+                listener.progress(partial);
+            }
+        }
+
+        // Method to publish the finished raster to the registry and every waiting item
+        @Override
+        public void completed(BufferedImage decoded) {
+            getInstance().publish(this, decoded);
+            List<ImageDecodeService.DecodeListener> waiting = new ArrayList<>(listeners);
+            listeners.clear();
+            for (ImageDecodeService.DecodeListener listener : waiting) {
+                listener.completed(decoded);
+            }
+        }
+
+        // Method to drop the entry so a later insert tries the file again
+        @Override
+        public void failed(Exception ex) {
+            getInstance().discard(this);
+            List<ImageDecodeService.DecodeListener> waiting = new ArrayList<>(listeners);
+            listeners.clear();
+            for (ImageDecodeService.DecodeListener listener : waiting) {
+                listener.failed(ex);
+            }
+        }
+    }
+
+    // Result of acquiring a file: the image to show now and, while it decodes, the decode that will replace it
+    public static class Handle {
+        private final BufferedImage image;
+        private final ImageDecodeService.DecodeTask task;
+        private final int subsampling;
+
+        Handle(BufferedImage image, ImageDecodeService.DecodeTask task, int subsampling) {
+            this.image = image;
+            this.task = task;
+            this.subsampling = subsampling;
+        }
+
+        // Method to get the shared image, or its placeholder if it is still decoding
+        public BufferedImage getImage() {
+            return image;
+        }
+
+        // Method to get the decode still filling in the placeholder, or null if the image is ready
+        public ImageDecodeService.DecodeTask getTask() {
+            return task;
+        }
+
+        public boolean isLoading() {
+            return task != null;
+        }
+
+        // Method to get the factor the shared image was decoded at
+        public int getSubsampling() {
+            return subsampling;
+        }
+    }
+
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final ImageRegistry INSTANCE = new ImageRegistry();
+
+    private final Map<String, FileRecord> files = new HashMap<>();          // Keyed by canonical path, while an entry uses the record
+    private final Map<String, Entry> entries = new LinkedHashMap<>();       // Keyed by path, file state and subsampling
+    private final Map<String, Entry> entriesByContent = new HashMap<>();    // Keyed by content hash and subsampling
+    private final Map<BufferedImage, Entry> entriesByImage = new IdentityHashMap<>();   // Placeholders and finished images
+
+    // Constructor kept private; the registry is shared by the whole application
+    private ImageRegistry() {
+    }
+
+    // Method to get the shared registry
+    public static ImageRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    // Method to take a reference to a file's image decoded for targetSize, starting a decode only if no entry has it yet;
+    // files are looked up by path and modification time, so only the header read for a new decode touches the file here
+    public synchronized Handle acquire(File file, Dimension targetSize, ImageDecodeService.DecodeListener listener) throws IOException {
+        String path = file.getCanonicalPath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+        FileRecord record = files.get(path);
+        if (record != null && (record.lastModified != lastModified || record.length != length)) {
+            record = null;      // The file changed; entries of its old content stay until their items release them
+        }
+
+        Entry entry = null;
+        if (record != null) {
+            int subsampling = ImageDecodeService.getSubsampling(record.width, record.height, targetSize);
+            entry = entries.get(getFileKey(path, record, subsampling));
+            if (entry == null && record.contentHash != null) {
+                entry = entriesByContent.get(record.contentHash + "/" + subsampling);
+            }
+        }
+        if (entry == null) {
+            // The decode reports to the entry, which fans out to every item inserted while it runs
+            ImageDecodeService.DecodeTask task = ImageDecodeService.getInstance().decode(file, targetSize, null);
+            if (record == null) {
+                record = new FileRecord(lastModified, length, task.getSourceWidth(), task.getSourceHeight());
+                files.put(path, record);
+                hashInBackground(file, path, record);
+            }
+            entry = new Entry(getFileKey(path, record, task.getSubsampling()), path, record, file.getName(), task.getSubsampling(), task);
+            task.setListener(entry);
+            entries.put(entry.key, entry);
+            entriesByImage.put(entry.placeholder, entry);
+            if (record.contentHash != null) {
+                registerContent(entry);
+            }
+        }
+        entry.references++;
+        if (entry.task != null && listener != null) {
+            entry.listeners.add(listener);
+        }
+        return new Handle(entry.image, entry.task, entry.subsampling);
+    }
+
+    // Method to give back a reference taken by acquire; the last release drops the entry and stops its decode
+    public synchronized boolean release(BufferedImage image) {
+        Entry entry = entriesByImage.get(image);
+        if (entry == null) return false;
+        if (--entry.references > 0) return true;
+        if (entry.task != null) {
+            entry.task.cancel();
+        }
+        discard(entry);
+        return true;
+    }
+
+    // Method to check whether a decode belongs to the registry, which then decides when to cancel it
+    public synchronized boolean isShared(ImageDecodeService.DecodeTask task) {
+        for (Entry entry : entries.values()) {
+            if (entry.task == task) return true;
+        }
+        return false;
+    }
+
+    // Method to get how many items hold a registered image, or 0 if the registry does not know it
+    public synchronized int getReferenceCount(BufferedImage image) {
+        Entry entry = entriesByImage.get(image);
+        return entry != null ? entry.references : 0;
+    }
+
+    // Method to get the reference count of every entry, labelled by file name and subsampling
+    public synchronized Map<String, Integer> getReferenceCounts() {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        for (Entry entry : entries.values()) {
+            String label = entry.subsampling == 1 ? entry.name : entry.name + " (1/" + entry.subsampling + ")";
+            counts.merge(label, entry.references, Integer::sum);
+        }
+        return counts;
+    }
+
+    // Method to get the number of distinct images held
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    // Method to check whether the hash of a file, as it is now, has come back from the decode threads
+    synchronized boolean isHashed(File file) throws IOException {
+        FileRecord record = files.get(file.getCanonicalPath());
+        return record != null && record.lastModified == file.lastModified() && record.length == file.length()
+            && record.contentHash != null;
+    }
+
+    // Method to get the raster memory sharing saves: each reference beyond the first would otherwise hold its own copy
+    public synchronized long getSavedBytes() {
+        long saved = 0;
+        for (Entry entry : entries.values()) {
+            saved += (entry.references - 1) * entry.getBytes();
+        }
+        return saved;
+    }
+
+    // Method to get the raster memory held by registered images
+    public synchronized long getHeldBytes() {
+        long held = 0;
+        for (Entry entry : entries.values()) {
+            held += entry.getBytes();
+        }
+        return held;
+    }
+
+    // Method to switch an entry from its placeholder to the decoded image
+    private synchronized void publish(Entry entry, BufferedImage decoded) {
+        entry.image = decoded;
+        entry.task = null;
+        if (entries.get(entry.key) == entry) {
+            entriesByImage.put(decoded, entry);
+        }
+    }
+
+    // Method to forget an entry and the images that map to it
+    private synchronized void discard(Entry entry) {
+        entries.remove(entry.key, entry);
+        if (entry.contentKey != null) {
+            entriesByContent.remove(entry.contentKey, entry);
+        }
+        Iterator<Entry> it = entriesByImage.values().iterator();
+        while (it.hasNext()) {
+            if (it.next() == entry) it.remove();
+        }
+        // The file's record goes with its last entry, so files no longer on the canvas are not remembered forever
+        for (Entry other : entries.values()) {
+            if (other.record == entry.record) return;
+        }
+        files.remove(entry.path, entry.record);
+    }
+
+    // Method to get the key of a file's entry, which changes with the file so an edited file is decoded afresh
+    private static String getFileKey(String path, FileRecord record, int subsampling) {
+        return path + "@" + record.lastModified + ":" + record.length + "/" + subsampling;
+    }
+
+    // Method to hash a file on a decode thread, so the Event Dispatch Thread never waits on reading the whole file
+    private void hashInBackground(File file, String path, FileRecord record) {
+        ImageDecodeService.getInstance().execute(() -> {
+            try {
+                String hash = hashFile(file);
+                if (file.lastModified() == record.lastModified && file.length() == record.length) {
+                    recordHash(path, record, hash);
+                }
+            } catch (IOException ex) {
+                // Left unhashed, the file is still shared between its own items, just not with copies under other names
+            }
+        });
+    }
+
+    // Method to store a file's hash and offer its entries to later inserts of copies with the same content
+    private synchronized void recordHash(String path, FileRecord record, String hash) {
+        if (files.get(path) != record) return;      // The file changed or was forgotten while it was hashed
+        record.contentHash = hash;
+        for (Entry entry : entries.values()) {
+            if (entry.record == record) {
+                registerContent(entry);
+            }
+        }
+    }
+
+    // Method to index an entry by its content, unless an entry for another copy of the file already is;
+    // items inserted before the hash was known keep their own raster, later inserts of either copy share the first
+    private void registerContent(Entry entry) {
+        String contentKey = entry.record.contentHash + "/" + entry.subsampling;
+        if (entriesByContent.putIfAbsent(contentKey, entry) == null) {
+            entry.contentKey = contentKey;
+        }
+    }
+
+    // Method to hash a file's bytes, so copies of the same image under different names share an entry
+    private static String hashFile(File file) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);    // Every Java platform is required to provide SHA-256
+        }
+        byte[] buffer = new byte[HASH_BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        StringBuilder sb = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
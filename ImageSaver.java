@@ -0,0 +1,156 @@
+// Saves images through a temporary file that replaces the target only once complete, encoding on a background worker for the UI.
+import java.awt.Component;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriter;
+import javax.imageio.event.IIOWriteProgressListener;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+public class ImageSaver extends SwingWorker<Void, Void> {
+    // Produces the image to save; runs on the worker thread, so it may only read a snapshot, never a live canvas
+    public interface Renderer {
+        RenderedImage render() throws IOException;
+    }
+
+    // Receives encoding progress; returning false aborts the write
+    public interface Progress {
+        boolean update(float percentDone);
+    }
+
+    private static final int POLL_MILLIS = 100;     // How often the dialog is updated and checked for Cancel
+
+    private final Component parent;
+    private final File file;
+    private final String format;
+    private final String source;
+    private final Renderer renderer;
+    private final ProgressMonitor monitor;
+    private final Timer poll;
+    private volatile boolean encoding = false;
+
+    // Constructor to prepare a background save; the dialog only appears if the save takes more than half a second
+    private ImageSaver(Component parent, File file, String format, String source, Renderer renderer) {
+        this.parent = parent;
+        this.file = file;
+        this.format = format;
+        this.source = source;
+        this.renderer = renderer;
+        monitor = new ProgressMonitor(parent, "Saving " + file.getName(), "Rendering...", 0, 100);
+        monitor.setMillisToDecideToPopup(POLL_MILLIS);
+        monitor.setMillisToPopup(500);
+        poll = new Timer(POLL_MILLIS, e -> {
+            if (monitor.isCanceled()) {
+                cancel(false);
+            } else {
+                monitor.setNote(encoding ? "Encoding..." : "Rendering...");
+                monitor.setProgress(getProgress());
+            }
+        });
+    }
+
+    // Method to save an image in the background with a progress dialog and Cancel; the renderer must work from a snapshot
+    public static ImageSaver start(Component parent, File file, String format, String source, Renderer renderer) {
+        ImageSaver saver = new ImageSaver(parent, file, format, source, renderer);
+        saver.poll.start();
+        saver.execute();
+        return saver;
+    }
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        RenderedImage image = renderer.render();
+        if (isCancelled()) return null;
+        encoding = true;
+        write(image, format, file, source, percent -> {
+            setProgress(Math.max(0, Math.min(100, (int) percent)));
+            return !isCancelled();
+        });
+        return null;
+    }
+
+    // Method run on the EDT once the save has finished, failed or been cancelled; a cancelled save leaves the old file untouched
+    @Override
+    protected void done() {
+        poll.stop();
+        monitor.close();
+        if (isCancelled()) return;
+        try {
+            get();
+            JOptionPane.showMessageDialog(parent, "Canvas saved successfully!");
+        } catch (ExecutionException ex) {
+            JOptionPane.showMessageDialog(parent, "Error saving: " + ex.getCause().getMessage());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Method to encode an image into a temporary file beside the target and move it into place only once it is complete,
+    // so a failed or cancelled save never leaves a partial file; progress may be null
+    public static void write(RenderedImage image, String format, File file, String source, Progress progress) throws IOException {
+        StudioEvents.Save event = new StudioEvents.Save();
+        event.begin();
+        Iterator<ImageWriter> writers = ImageIO.getImageWriters(ImageTypeSpecifier.createFromRenderedImage(image), format);
+        if (!writers.hasNext()) {
+            throw new IOException("No writer for format " + format);
+        }
+        ImageWriter writer = writers.next();
+        File target = file.getAbsoluteFile();
+        File temp = File.createTempFile(target.getName() + ".", ".tmp", target.getParentFile());
+        boolean[] aborted = {false};
+        boolean moved = false;
+        try {
+            try (ImageOutputStream out = new FileImageOutputStream(temp)) {
+                writer.setOutput(out);
+                if (progress != null) {
+                    writer.addIIOWriteProgressListener(new IIOWriteProgressListener() {
+                        @Override
+                        public void imageProgress(ImageWriter source, float percentageDone) {
+                            if (!progress.update(percentageDone)) source.abort();
+                        }
+
+                        @Override
+                        public void writeAborted(ImageWriter source) {
+                            aborted[0] = true;
+                        }
+
+                        @Override public void imageStarted(ImageWriter source, int imageIndex) { }
+                        @Override public void imageComplete(ImageWriter source) { }
+                        @Override public void thumbnailStarted(ImageWriter source, int imageIndex, int thumbnailIndex) { }
+                        @Override public void thumbnailProgress(ImageWriter source, float percentageDone) { }
+                        @Override public void thumbnailComplete(ImageWriter source) { }
+                    });
+                }
+                writer.write(null, new IIOImage(image, null, null), null);
+            } finally {
+                writer.dispose();
+            }
+            if (aborted[0]) {
+                throw new InterruptedIOException("Save cancelled");
+            }
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException ex) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved = true;
+        } finally {
+            if (!moved) temp.delete();
+        }
+        StudioEvents.commitSave(event, source, format, image.getWidth(), image.getHeight(), target);
+    }
+}
@@ -5,44 +5,307 @@ import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
 import java.awt.event.*;
 import java.awt.geom.AffineTransform;
+import java.awt.geom.NoninvertibleTransformException;
 import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import javax.imageio.ImageIO;
+import java.util.Map;
 import java.awt.geom.Ellipse2D;
 
 public class LeftCanvas extends JPanel {
+    // Per-item state the canvas needs beyond the scene store: interaction geometry and where the image came from
     private static class CanvasImage {
-        CreationItem creationItem;
-        Point2D.Double position;
+        final SceneStore.Item creationItem;             // View of the item's slot; its index is the stacking order
+        Geometry geometry;                              // Built on first hit test, selection or repaint of the item
+
+        File sourceFile;                                // File the image was decoded from, if it may need a sharper decode
+        int subsampling = 1;                            // Source pixels per decoded pixel along each axis
+
+        CreationItem detached;                          // The item's state while an undoable edit holds it out of the scene
+        double detachedX, detachedY;                    // Its position while detached
         
-        // Constructor to initialize a CanvasImage with a CreationItem and its position
-        CanvasImage(CreationItem item, int x, int y) {
+        // Constructor to initialize a CanvasImage for an item already in the scene store
+        CanvasImage(SceneStore.Item item) {
             this.creationItem = item;
-            this.position = new Point2D.Double(x, y);
         }
-        
-        // Method to get the center point of the image based on its position and scale
-        Point2D.Double getCenter() {
-            double w = creationItem.getImage().getWidth() * creationItem.getScale();
-            double h = creationItem.getImage().getHeight() * creationItem.getScale();
-            return new Point2D.Double(position.x + w / 2, position.y + h / 2);
+
+        // Method to get the item to update when a decode finishes: the store's view, the detached copy, or null once disposed
+        CreationItem current() {
+            return creationItem.isLive() ? creationItem : detached;
+        }
+    }
+
+    // The canvas as it was when a save started, rendered on the save's worker thread while editing carries on
+    public static final class Snapshot {
+        private final int width;
+        private final int height;
+        private final SceneStore.Snapshot scene;
+
+        // Constructor for a canvas of a size showing a scene; BatchRenderer renders scenes that never go on a canvas this way
+        Snapshot(Dimension canvasSize, SceneStore.Snapshot scene) {
+            this.width = canvasSize.width;
+            this.height = canvasSize.height;
+            this.scene = scene;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        // Method to get the image to encode in a format: very large canvases are rendered in parallel tiles as the encoder
+        // asks for them, others in one image, opaque for JPEG since its writer cannot encode an alpha channel
+        public RenderedImage createImage(String format) {
+            if (TiledExporter.shouldTile(width, height)) {
+                return TiledExporter.createImage(this, format);
+            }
+            boolean jpeg = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+            BufferedImage image = new BufferedImage(width, height, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2 = image.createGraphics();
+            renderRegion(g2, new Rectangle(0, 0, width, height));
+            g2.dispose();
+            return image;
+        }
+
+        // Method to draw the white background and the images intersecting a region; safe on any thread
+        void renderRegion(Graphics2D g2, Rectangle region) {
+            renderScene(g2, region, scene);
+        }
+    }
+
+    // Position, rotation, scale and flips of an item at one moment, as restored by a transform edit
+    private static class TransformState {
+        double x, y, rotation, scale;
+        int imageWidth;                                 // Width of the image the scale applies to; a refined decode changes it
+        boolean flipH, flipV;
+
+        // Constructor for a state to be filled in by set, like the one a drag starts from
+        TransformState() {
+        }
+
+        TransformState(SceneStore.Item item) {
+            set(item);
+        }
+
+        // Constructor to copy a state, so an edit keeps its own
+        TransformState(TransformState other) {
+            x = other.x;
+            y = other.y;
+            rotation = other.rotation;
+            scale = other.scale;
+            imageWidth = other.imageWidth;
+            flipH = other.flipH;
+            flipV = other.flipV;
+        }
+
+        // Method to record an item's current state
+        void set(SceneStore.Item item) {
+            x = item.getX();
+            y = item.getY();
+            rotation = item.getRotation();
+            scale = item.getScale();
+            imageWidth = item.getImage().getWidth();
+            flipH = item.isFlippedH();
+            flipV = item.isFlippedV();
+        }
+
+        // Method to check if an item is still in this state
+        boolean matches(SceneStore.Item item) {
+            return x == item.getX() && y == item.getY() && rotation == item.getRotation() && scale == item.getScale()
+                && imageWidth == item.getImage().getWidth() && flipH == item.isFlippedH() && flipV == item.isFlippedV();
+        }
+    }
+
+    // Edit concerning a single image; dropped from the history if that image fails to load
+    private abstract static class ItemEdit implements EditHistory.Edit {
+        final CanvasImage img;
+
+        ItemEdit(CanvasImage img) {
+            this.img = img;
+        }
+    }
+
+    // Edit moving, rotating, scaling or flipping one image; a whole drag is recorded as one edit
+    private class TransformEdit extends ItemEdit {
+        final TransformState before;
+        final TransformState after;
+
+        TransformEdit(CanvasImage img, TransformState before, TransformState after) {
+            super(img);
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public void undo() {
+            applyTransform(img, before);
+        }
+
+        @Override
+        public void redo() {
+            applyTransform(img, after);
+        }
+
+        @Override
+        public long getBytes() {
+            return TRANSFORM_EDIT_BYTES;
+        }
+    }
+
+    // Edit inserting or deleting one image; while the image is out of the scene the edit keeps its state, image and decode
+    private class PresenceEdit extends ItemEdit {
+        final boolean inserted;
+        final long bytes;
+        int index;                                      // Stacking position to restore a deleted image at
+        boolean applied = true;                         // False while the edit is undone, on the redo stack
+
+        PresenceEdit(CanvasImage img, boolean inserted, int index) {
+            super(img);
+            this.inserted = inserted;
+            this.index = index;
+            BufferedImage image = img.current().getImage();
+            this.bytes = PRESENCE_EDIT_BYTES + (long) image.getWidth() * image.getHeight() * 4;
+        }
+
+        @Override
+        public void undo() {
+            if (inserted) {
+                index = detachFromScene(img);
+            } else {
+                reattachToScene(img, index);
+            }
+            applied = false;
+        }
+
+        @Override
+        public void redo() {
+            if (inserted) {
+                reattachToScene(img, index);
+            } else {
+                index = detachFromScene(img);
+            }
+            applied = true;
+        }
+
+        // Counts the image too, since a deleted image stays in memory for as long as it can be restored
+        @Override
+        public long getBytes() {
+            return bytes;
+        }
+
+        // Method to let go of the image once the edit can no longer bring it back. Only the edit that took the image out of the
+        // scene holds it: an insert while undone, a delete while applied. A trimmed insert must leave alone an image a later delete holds
+        @Override
+        public void discard() {
+            if (applied != inserted) {
+                disposeDetached(img);
+            }
+        }
+    }
+
+    // Edit rotating the whole canvas
+    private class CanvasRotationEdit implements EditHistory.Edit {
+        final double before;
+        final double after;
+
+        CanvasRotationEdit(double before, double after) {
+            this.before = before;
+            this.after = after;
+        }
+
+        @Override
+        public void undo() {
+            setCanvasRotation(before);
+        }
+
+        @Override
+        public void redo() {
+            setCanvasRotation(after);
+        }
+
+        @Override
+        public long getBytes() {
+            return CANVAS_EDIT_BYTES;
         }
     }
 
+    // Edit applying one bulk translate, rotate or scale to every image on the canvas
+    private class BulkEdit implements EditHistory.Edit {
+        final double dx, dy, radians, factor;
+
+        BulkEdit(double dx, double dy, double radians, double factor) {
+            this.dx = dx;
+            this.dy = dy;
+            this.radians = radians;
+            this.factor = factor;
+        }
+
+        @Override
+        public void undo() {
+            store.scale(0, store.size(), 1 / factor);
+            store.rotate(0, store.size(), -radians);
+            store.translate(0, store.size(), -dx, -dy);
+            refreshAllBounds();
+        }
+
+        @Override
+        public void redo() {
+            store.translate(0, store.size(), dx, dy);
+            store.rotate(0, store.size(), radians);
+            store.scale(0, store.size(), factor);
+            refreshAllBounds();
+        }
+
+        @Override
+        public long getBytes() {
+            return CANVAS_EDIT_BYTES;
+        }
+    }
+
+    // Geometry derived from an item, rebuilt by LeftCanvas.getGeometry when the item's version changes
+    private static class Geometry {
+        final AffineTransform transform = new AffineTransform();    // Image space to canvas space
+        final AffineTransform inverse = new AffineTransform();      // Canvas space to image space
+        boolean invertible;
+        final double[] corners = new double[8];                     // Transformed corners as x,y pairs
+        final double[] handles = new double[10];                    // FLIP_TOP, FLIP_BOTTOM, FLIP_LEFT, FLIP_RIGHT, ROTATE as x,y pairs
+        final Rectangle2D.Double bounds = new Rectangle2D.Double();        // Bounds of the transformed image
+        final Rectangle2D.Double handleBounds = new Rectangle2D.Double();  // Bounds including handle ring and rotate stalk
+        double centerX, centerY;
+        long cachedVersion = -1;
+    }
+
     // Enum to define the types of handles for image manipulation
     private enum HandleType {
         NONE, MOVE, SCALE, FLIP_TOP, FLIP_BOTTOM, FLIP_LEFT, FLIP_RIGHT, ROTATE
     }
 
-    private List<CanvasImage> images = new ArrayList<>(); // List to hold all images on the canvas
+    // Flip handles in the order they are stored in Geometry.handles
+    private static final HandleType[] FLIP_HANDLES = {
+        HandleType.FLIP_TOP, HandleType.FLIP_BOTTOM, HandleType.FLIP_LEFT, HandleType.FLIP_RIGHT
+    };
+
+    private final SceneStore<CanvasImage> store = new SceneStore<>();    // Every image on the canvas, bottom first
+    private SpatialGrid<CanvasImage> hitIndex = new SpatialGrid<>(128, img -> img.creationItem.getIndex()); // Index of image bounds for hit testing
+    private Map<CanvasImage, ImageDecodeService.DecodeTask> pendingLoads = new HashMap<>(); // Placeholders still being decoded
+    private final EditHistory history = new EditHistory(HISTORY_BUDGET_BYTES);             // Undo and redo log of edits
+    // State of the dragged image when the drag began, recorded as one edit on release; filled in on each press, so pressing allocates nothing
+    private final TransformState dragStartState = new TransformState();
+    private boolean dragStarted = false;
     private CanvasImage selectedImage = null;
     private HandleType activeHandle = HandleType.NONE;
 
-    private Point dragStartPoint;                       // Point where the drag started
+    private final Point dragStartPoint = new Point();   // Point where the drag started
     private double dragStartRotation;                   // Rotation of the image at the start of the drag
     private double dragStartAngle;                      // Angle of the mouse at the start of the drag
     private double dragStartScaleDist;                  // Distance from the center of the image to the mouse at the start of the drag
@@ -50,43 +313,239 @@ public class LeftCanvas extends JPanel {
     private double canvasRotation = 0;                  // Current rotation of the canvas in radians
     private final int HANDLE_SIZE = 10;                 // Size of the handles for image manipulation
     private final int ROTATE_HANDLE_OFFSET = 30;        // Offset for the rotate handle from the center of the image
+    private static final long HISTORY_BUDGET_BYTES = 64L * 1024 * 1024;    // Memory the undo history may keep alive
+    private static final long TRANSFORM_EDIT_BYTES = 112;                   // Approximate size of each kind of edit
+    private static final long PRESENCE_EDIT_BYTES = 48;
+    private static final long CANVAS_EDIT_BYTES = 48;
+    static final int DEFAULT_CANVAS_WIDTH = 400;        // Size of a new canvas, and of a batch scene with no canvas line
+    static final int DEFAULT_CANVAS_HEIGHT = 400;
 
-    private Dimension canvasSize = new Dimension(400, 400); // Default size of the canvas
+    private Dimension canvasSize = new Dimension(DEFAULT_CANVAS_WIDTH, DEFAULT_CANVAS_HEIGHT); // Default size of the canvas
     private BufferedImage canvasBackground;                              // Background image for the canvas
     private Color outOfBoundsColor = new Color(240, 240, 240);     // Color for the area outside the canvas
 
+    // Scratch objects reused by the paint, move and hit-test paths so they allocate nothing per event
+    private final AffineTransform canvasTransform = new AffineTransform();
+    private final AffineTransform inverseCanvasTransform = new AffineTransform();
+    private final AffineTransform drawTransform = new AffineTransform();
+    private final Point2D.Double canvasPoint = new Point2D.Double();
+    private final Point2D.Double localPoint = new Point2D.Double();
+    private final double[] boundsScratch = new double[8];
+    private final Rectangle clipScratch = new Rectangle();
+    private final Rectangle2D.Double canvasClip = new Rectangle2D.Double();
+    private final Rectangle2D.Double regionScratch = new Rectangle2D.Double();
+    private final Rectangle2D.Double hitBoundsScratch = new Rectangle2D.Double();
+    private final Rectangle dirtyBefore = new Rectangle();
+    private final Rectangle dirtyAfter = new Rectangle();
+    private final Ellipse2D.Double handleCircle = new Ellipse2D.Double();
+    private final PerformanceHud hud;               // Frame statistics overlay, toggled with F3
+
     // Constructor to initialize the LeftCanvas with default settings
     public LeftCanvas() {
         setBackground(Color.WHITE);
         setupDragAndDrop();
         setupMouseListeners();
+        setupKeyBindings();
         updateCanvasSize();
+        hud = new PerformanceHud(this, "LeftCanvas");
+    }
+
+    // Listener that refines placeholder images on the canvas as their shared background decode progresses
+    private class PlaceholderLoad implements ImageDecodeService.DecodeListener {
+        final List<CanvasImage> canvasImages = new ArrayList<>();   // Every image showing the same placeholder
+
+        // Method to show the rows decoded so far
+        @Override
+        public void progress(BufferedImage partial) {
+            for (CanvasImage canvasImage : canvasImages) {
+                refreshImage(canvasImage);
+            }
+        }
+
+        // Method to swap the finished, display-compatible raster in for the placeholder
+        @Override
+        public void completed(BufferedImage image) {
+            for (CanvasImage canvasImage : canvasImages) {
+                pendingLoads.remove(canvasImage);
+                // A deleted image still held by the undo history gets the result too, so restoring it shows the decoded image
+                CreationItem item = canvasImage.current();
+                if (item == null) continue;     // Deleted for good while a shared decode finished for others
+                MipmapChain.invalidate(item.getImage());
+                item.setImage(image);
+                refreshImage(canvasImage);
+            }
+        }
+
+        // Method to drop the placeholders and report why the image could not be loaded
+        @Override
+        public void failed(Exception ex) {
+            boolean shown = false;
+            for (CanvasImage canvasImage : canvasImages) {
+                pendingLoads.remove(canvasImage);
+                if (canvasImage.creationItem.isLive()) {
+                    removeFromScene(canvasImage);
+                    shown = true;
+                } else {
+                    disposeDetached(canvasImage);
+                }
+                // Edits of an image that never loaded cannot be replayed
+                history.removeIf(edit -> edit instanceof ItemEdit itemEdit && itemEdit.img == canvasImage);
+            }
+            // Placeholders already deleted by the user need no explanation
+            if (shown) {
+                JOptionPane.showMessageDialog(LeftCanvas.this, "Failed to load image: " + ex.getMessage());
+            }
+        }
+    }
+
+    // Callback for visiting the images on the canvas in stacking order, bottom first
+    interface ImageVisitor {
+        void visit(CreationItem item, double x, double y, File sourceFile, int subsampling) throws IOException;
+    }
+
+    // Listener that swaps in a sharper decode once a subsampled image has been scaled up past its resolution
+    private class RefineLoad implements ImageDecodeService.DecodeListener {
+        final CanvasImage canvasImage;
+        int subsampling;
+
+        RefineLoad(CanvasImage canvasImage) {
+            this.canvasImage = canvasImage;
+        }
+
+        // The current image stays visible while the sharper one decodes, so progress is not shown
+        @Override
+        public void progress(BufferedImage partial) {
+        }
+
+        // Method to replace the image and compensate the scale so its on-screen size does not change
+        @Override
+        public void completed(BufferedImage image) {
+            pendingLoads.remove(canvasImage);
+            CreationItem item = canvasImage.current();
+            if (item == null) return;
+            BufferedImage previous = item.getImage();
+            double ratio = (double) previous.getWidth() / image.getWidth();
+            item.setImage(image);
+            item.scale(ratio);
+            ImageRegistry.getInstance().release(previous);
+            canvasImage.subsampling = subsampling;
+            refreshImage(canvasImage);
+        }
+
+        // The lower resolution image is still usable, so a failed refinement is not reported
+        @Override
+        public void failed(Exception ex) {
+            pendingLoads.remove(canvasImage);
+        }
     }
 
     // Method to insert an image into the canvas based on its type
     public void insertImage(BufferedImage image, String type) {
-        CreationItem item;
+        image = ImageImporter.importImage(image);   // Convert once so every later blit uses a fast loop
+        addCreationItem(createItem(image, type));  // Add the CreationItem to the canvas
+    }
+
+    // Method to insert an image file into the canvas, sharing the registry's raster or showing a placeholder while it decodes
+    public void insertImage(File file, String type) throws IOException {
+        PlaceholderLoad load = new PlaceholderLoad();
+        // Large images are shrunk to fit the canvas anyway, so only decode the resolution that will be shown
+        Dimension fitSize = new Dimension((int) Math.ceil(canvasSize.width * 0.95), (int) Math.ceil(canvasSize.height * 0.95));
+        ImageRegistry.Handle handle = ImageRegistry.getInstance().acquire(file, fitSize, load);
+        // Callbacks are posted to the EDT, so the placeholder is registered before any of them can run
+        CanvasImage canvasImg = addCreationItem(createItem(handle.getImage(), type));
+        canvasImg.sourceFile = file;
+        canvasImg.subsampling = handle.getSubsampling();
+        if (handle.isLoading()) {
+            load.canvasImages.add(canvasImg);
+            pendingLoads.put(canvasImg, handle.getTask());
+        }
+    }
+
+    // Method to place items in stacking order, each showing its decode's placeholder until the decoded image is swapped in
+    void placeDecodingItems(List<CreationItem> items, double[] positions, List<ImageDecodeService.DecodeTask> tasks) {
+        Map<ImageDecodeService.DecodeTask, PlaceholderLoad> loads = new IdentityHashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            CanvasImage canvasImg = addToScene(items.get(i), positions[i * 2], positions[i * 2 + 1]);
+            ImageDecodeService.DecodeTask task = tasks.get(i);
+            loads.computeIfAbsent(task, t -> new PlaceholderLoad()).canvasImages.add(canvasImg);
+            pendingLoads.put(canvasImg, task);
+        }
+        // Only safe on the EDT, before any callback for the tasks has had a chance to run
+        for (Map.Entry<ImageDecodeService.DecodeTask, PlaceholderLoad> entry : loads.entrySet()) {
+            entry.getKey().setListener(entry.getValue());
+        }
+        repaint();
+    }
+
+    // Method to create the CreationItem matching a type string
+    static CreationItem createItem(BufferedImage image, String type) {
         // Determine the type of CreationItem to create based on the provided type string
         switch (type.toLowerCase()) {
             case "animal":
-                item = new AnimalItem(image);
-                break;
+                return new AnimalItem(image);
             case "flower":
-                item = new FlowerItem(image);
-                break;
+                return new FlowerItem(image);
             default:
-                item = new CustomImageItem(image);
+                return new CustomImageItem(image);
+        }
+    }
+
+    // Method to place an already transformed CreationItem at an exact position, without centering or fitting it
+    public void placeItem(CreationItem item, double x, double y) {
+        addToScene(item, x, y);
+        repaint();
+    }
+
+    // Method to lay out a grid of copies of an item, each sharing its image; the copies are independent items afterwards
+    public void tileItem(CreationItem template, double originX, double originY, double stepX, double stepY, int columns, int rows) {
+        for (int row = 0; row < rows; row++) {
+            for (int column = 0; column < columns; column++) {
+                addToScene(template, originX + column * stepX, originY + row * stepY);
+            }
         }
-        addCreationItem(item);  // Add the CreationItem to the canvas
+        repaint();
+    }
+
+    // Method to move every image on the canvas by the same offset; nothing is recorded if nothing would move
+    public void translateAll(double dx, double dy) {
+        if (store.size() == 0 || (dx == 0 && dy == 0)) return;
+        store.translate(0, store.size(), dx, dy);
+        refreshAllBounds();
+        history.add(new BulkEdit(dx, dy, 0, 1));
+    }
+
+    // Method to rotate every image on the canvas about its own center; nothing is recorded if nothing would turn
+    public void rotateAll(double radians) {
+        if (store.size() == 0 || radians == 0) return;
+        store.rotate(0, store.size(), radians);
+        refreshAllBounds();
+        history.add(new BulkEdit(0, 0, radians, 1));
+    }
+
+    // Method to scale every image on the canvas about its top-left corner; the factor must be positive, so the edit can be undone
+    public void scaleAll(double factor) {
+        if (!(factor > 0) || Double.isInfinite(factor)) {
+            throw new IllegalArgumentException("Scale factor must be positive: " + factor);
+        }
+        if (store.size() == 0 || factor == 1) return;
+        store.scale(0, store.size(), factor);
+        refreshAllBounds();
+        history.add(new BulkEdit(0, 0, 0, factor));
+    }
+
+    // Method to re-index every image after a bulk transform and repaint the whole canvas
+    private void refreshAllBounds() {
+        for (int i = 0, n = store.size(); i < n; i++) {
+            updateHitIndex(store.getAttachment(i));
+        }
+        repaint();
     }
 
     // Method to add a CreationItem to the canvas at the center
-    private void addCreationItem(CreationItem item) {
+    private CanvasImage addCreationItem(CreationItem item) {
         int x = (canvasSize.width - item.getImage().getWidth()) / 2;    // Calculate the x position to center the image
         int y = (canvasSize.height - item.getImage().getHeight()) / 2;  // Calculate the y position to center the image
         
-        CanvasImage canvasImg = new CanvasImage(item, Math.max(0, x), Math.max(0, y)); // Create a new CanvasImage with the item and its position
-        
         // Scale the image if it exceeds the canvas size
         if (item.getImage().getWidth() > canvasSize.width || item.getImage().getHeight() > canvasSize.height) {
             double scale = Math.min(
@@ -96,53 +555,168 @@ public class LeftCanvas extends JPanel {
             item.scale(scale * 0.95);
         }
         
-        images.add(canvasImg);  // Add the CanvasImage to the list of images
+        CanvasImage canvasImg = addToScene(item, Math.max(0, x), Math.max(0, y)); // Copy the item into the scene store and the hit-test index
+        history.add(new PresenceEdit(canvasImg, true, canvasImg.creationItem.getIndex()));
         repaint();              // Repaint the canvas to reflect the changes
+        return canvasImg;
     }
 
     // Method to rotate the entire canvas by a specified angle in radians
     public void rotateCanvas(double radians) {
+        double before = canvasRotation;
         canvasRotation += radians;
+        history.add(new CanvasRotationEdit(before, canvasRotation));
         repaint();
     }
 
+    // Method to revert the most recent edit, if any
+    public void undo() {
+        history.undo();
+    }
+
+    // Method to apply the most recently undone edit again, if any
+    public void redo() {
+        history.redo();
+    }
+
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    // Method to get the rotation of the canvas in radians
+    double getCanvasRotation() {
+        return canvasRotation;
+    }
+
+    // Method to set the rotation of the canvas in radians, as restored from a scene file
+    void setCanvasRotation(double radians) {
+        canvasRotation = radians;
+        repaint();
+    }
+
+    // Method to pass every image's item, position and source to a visitor, bottom of the stack first
+    void visitImages(ImageVisitor visitor) throws IOException {
+        for (int i = 0, n = store.size(); i < n; i++) {
+            CanvasImage img = store.getAttachment(i);
+            visitor.visit(img.creationItem, img.creationItem.getX(), img.creationItem.getY(), img.sourceFile, img.subsampling);
+        }
+    }
+
+    // Method to check whether any image is still a placeholder or being re-decoded
+    boolean hasPendingLoads() {
+        // Decodes of deleted images kept for undo do not hold up a save
+        for (CanvasImage img : pendingLoads.keySet()) {
+            if (img.creationItem.isLive()) return true;
+        }
+        return false;
+    }
+
     // Method to load an image from a file and add it to the canvas
     public void loadImageFromFile(File file) throws IOException {
-        BufferedImage img = ImageIO.read(file);
-        addImage(img);
+        insertImage(file, "custom");
     }
 
     // Method to delete the currently selected image from the canvas
     public void deleteSelectedImage() {
         if (selectedImage != null) {
-            images.remove(selectedImage);
-            selectedImage = null;
-            repaint();
+            CanvasImage img = selectedImage;
+            int index = detachFromScene(img);
+            history.add(new PresenceEdit(img, false, index));
         }
     }
 
-    // Method to save the current canvas as an image file in a specified format
+    // Method to save the current canvas as an image file in a specified format, on the calling thread; the toolbar saves in the background instead
     public void saveCanvasToFile(File file, String format) throws IOException {
-        BufferedImage image = captureCanvas();
-        ImageIO.write(image, format, file);
+        ImageSaver.write(snapshot().createImage(format), format, file, "LeftCanvas", null);
     }
 
     // Method to capture the current state of the canvas as a BufferedImage
     public BufferedImage captureCanvas() {
+        StudioEvents.Capture event = new StudioEvents.Capture();
+        event.begin();
         BufferedImage image = new BufferedImage(canvasSize.width, canvasSize.height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g2 = image.createGraphics();
-        
-        g2.setColor(Color.WHITE);
-        g2.fillRect(0, 0, canvasSize.width, canvasSize.height);
-        
-        for (CanvasImage img : images) {
-            g2.drawImage(img.creationItem.getImage(), getTransformForImage(img), null);
-        }
-        
+        renderScene(g2, new Rectangle(0, 0, canvasSize.width, canvasSize.height), store);
         g2.dispose();
+        if (event.shouldCommit()) {
+            event.width = canvasSize.width;
+            event.height = canvasSize.height;
+            event.items = store.size();
+            event.commit();
+        }
         return image;
     }
 
+    // Method to get the size of the drawable canvas area
+    public Dimension getCanvasSize() {
+        return new Dimension(canvasSize);
+    }
+
+    // Method to take a snapshot of the canvas to save in the background; it copies each item's position and transform but shares the images.
+    // A placeholder is written into by its decode until the image appears, so like SceneFile.save it waits for no loads to be pending
+    public Snapshot snapshot() throws IOException {
+        if (hasPendingLoads()) {
+            throw new IOException("Some images are still loading; try again once they appear.");
+        }
+        return new Snapshot(canvasSize, store.snapshot());
+    }
+
+    // Method to draw the white background and the items of a scene intersecting a region; g2's origin is the region's corner.
+    // Captures, saves and BatchRenderer all render through here. Items of the live store on the Event Dispatch Thread are
+    // drawn from the sprites painting keeps; a snapshot's are drawn as a sprite looks, bilinear from the nearest mipmap
+    // level at the whole-pixel position sprites are placed at, so both give the same pixels
+    static void renderScene(Graphics2D g2, Rectangle region, SceneView scene) {
+        g2.setColor(Color.WHITE);
+        g2.fillRect(0, 0, region.width, region.height);
+        g2.translate(-region.x, -region.y);
+
+        // Culling reads only the scene's bounds arrays; items are touched only if they will be drawn
+        SceneStore<?> live = scene instanceof SceneStore ? (SceneStore<?>) scene : null;
+        AffineTransform transform = new AffineTransform();
+        double minX = region.getMinX(), minY = region.getMinY(), maxX = region.getMaxX(), maxY = region.getMaxY();
+        for (int i = 0, n = scene.size(); i < n; i++) {
+            if (!scene.intersects(i, minX, minY, maxX, maxY)) continue;
+            BufferedImage source = scene.getImage(i);
+            if (ImageImporter.hasExportSource(source)) {
+                // Conversion lost precision in translucent pixels, so export from the retained original
+                scene.getTransform(i, transform);
+                drawExportSource(g2, source, scene.getScale(i), transform);
+                continue;
+            }
+            SpriteCache.Sprite sprite = live != null ? SpriteCache.getInstance().getSprite(live.get(i)) : null;
+            if (sprite != null) {
+                g2.drawImage(sprite.raster, (int) Math.round(scene.getX(i)) + sprite.offsetX,
+                    (int) Math.round(scene.getY(i)) + sprite.offsetY, null);
+                continue;
+            }
+            BufferedImage level = MipmapChain.getLevelFor(source, scene.getScale(i));
+            scene.getTransform(i, transform);
+            transform.preConcatenate(AffineTransform.getTranslateInstance(
+                Math.round(scene.getX(i)) - scene.getX(i), Math.round(scene.getY(i)) - scene.getY(i)));
+            transform.concatenate(MipmapChain.getLevelTransform(source, level));
+            Graphics2D itemGraphics = (Graphics2D) g2.create();
+            itemGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            itemGraphics.drawImage(level, transform, null);
+            itemGraphics.dispose();
+        }
+    }
+
+    // Method to draw an item from the original its image kept for export, given the item's scale and image-to-canvas transform.
+    // Like a sprite, it is drawn bilinear from the nearest mipmap level, but of the original rather than the converted image
+    private static void drawExportSource(Graphics2D g2, BufferedImage source, double scale, AffineTransform transform) {
+        BufferedImage original = ImageImporter.getExportSource(source);
+        BufferedImage level = MipmapChain.getLevelFor(original, scale);
+        transform.concatenate(MipmapChain.getLevelTransform(original, level));
+        Graphics2D itemGraphics = (Graphics2D) g2.create();
+        itemGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        itemGraphics.drawImage(level, transform, null);
+        itemGraphics.dispose();
+    }
+
     // Method to set the color for the area outside the canvas
     public void setOutOfBoundsColor(Color color) {
         this.outOfBoundsColor = color;
@@ -157,29 +731,142 @@ public class LeftCanvas extends JPanel {
 
     // Method to clear all images from the canvas
     public void clearCanvas() {
-        images.clear();
+        history.clear();        // Releases the images of deleted items that were kept for undo
+        for (int i = 0, n = store.size(); i < n; i++) {
+            SceneStore.Item item = store.get(i);
+            SpriteCache.getInstance().invalidate(item);
+            ImageRegistry.getInstance().release(item.getImage());
+        }
+        // Shared decodes were stopped by the registry if nothing else still needs them
+        for (ImageDecodeService.DecodeTask task : pendingLoads.values()) {
+            if (!ImageRegistry.getInstance().isShared(task)) {
+                task.cancel();
+            }
+        }
+        pendingLoads.clear();
+        store.clear();
+        hitIndex.clear();
         selectedImage = null;
         repaint();
     }
 
-    // Method to add an image to the canvas at the center
-    private void addImage(BufferedImage img) {
-        int x = (canvasSize.width - img.getWidth()) / 2;
-        int y = (canvasSize.height - img.getHeight()) / 2;
-        
-        CreationItem item = new CustomImageItem(img);
-        CanvasImage canvasImg = new CanvasImage(item, Math.max(0, x), Math.max(0, y));
-        
-        if (img.getWidth() > canvasSize.width || img.getHeight() > canvasSize.height) {
-            double scale = Math.min(
-                (double)canvasSize.width / img.getWidth(),
-                (double)canvasSize.height / img.getHeight()
-            );
-            item.scale(scale * 0.95);
+    // Method to copy an item onto the top of the scene store and register it with the hit-test index
+    private CanvasImage addToScene(CreationItem template, double x, double y) {
+        SceneStore.Item item = store.add(template, x, y, null);
+        CanvasImage canvasImg = new CanvasImage(item);
+        store.setAttachment(item.getIndex(), canvasImg);
+        updateHitIndex(canvasImg);
+        return canvasImg;
+    }
+
+    // Method to remove an image from the scene for good, cancelling its decode if it is still a placeholder
+    private void removeFromScene(CanvasImage img) {
+        detachFromScene(img);
+        disposeDetached(img);
+    }
+
+    // Method to take an image out of the scene, keeping its state, image reference and decode so it can be put back; returns its stacking position
+    private int detachFromScene(CanvasImage img) {
+        SceneStore.Item item = img.creationItem;
+        int index = item.getIndex();
+        CreationItem detached = createItem(item.getImage(), item.getType());
+        detached.rotate(item.getRotation());
+        detached.scale(item.getScale());
+        if (item.isFlippedH()) detached.flipHorizontal();
+        if (item.isFlippedV()) detached.flipVertical();
+        img.detached = detached;
+        img.detachedX = item.getX();
+        img.detachedY = item.getY();
+
+        getDirtyRegion(img, dirtyBefore);
+        hitIndex.remove(img);
+        SpriteCache.getInstance().invalidate(item);
+        store.remove(item);
+        img.geometry = null;    // The slot's version restarts when it is put back, so cached geometry could look current
+        if (selectedImage == img) {
+            selectedImage = null;
         }
-        
-        images.add(canvasImg);
-        repaint();
+        repaintRegion(dirtyBefore, null);
+        return index;
+    }
+
+    // Method to put a detached image back at a stacking position, clamped to the top if the scene has fewer images now
+    private void reattachToScene(CanvasImage img, int index) {
+        store.insert(Math.min(index, store.size()), img.creationItem, img.detached, img.detachedX, img.detachedY, img);
+        img.detached = null;
+        updateHitIndex(img);
+        repaintRegion(getDirtyRegion(img, dirtyAfter), null);
+    }
+
+    // Method to release the image reference and decode a detached image still holds, once nothing can put it back
+    private void disposeDetached(CanvasImage img) {
+        if (img.detached == null) return;
+        ImageDecodeService.DecodeTask task = pendingLoads.remove(img);
+        ImageRegistry.getInstance().release(img.detached.getImage());
+        // A decode shared by several placeholders keeps running until the last of them is removed
+        if (task != null && !ImageRegistry.getInstance().isShared(task) && !pendingLoads.containsValue(task)) {
+            task.cancel();
+        }
+        img.detached = null;
+    }
+
+    // Method to move, rotate, scale and flip an image back to a recorded state
+    private void applyTransform(CanvasImage img, TransformState state) {
+        SceneStore.Item item = img.creationItem;
+        getDirtyRegion(img, dirtyBefore);
+        // A sharper decode may have replaced the image since; keep the recorded on-screen size
+        double scale = state.scale;
+        int width = item.getImage().getWidth();
+        if (width != state.imageWidth) {
+            scale = scale * state.imageWidth / width;
+        }
+        item.setPosition(state.x, state.y);
+        item.setTransform(state.rotation, scale, state.flipH, state.flipV);
+        updateHitIndex(img);
+        repaintRegion(dirtyBefore, getDirtyRegion(img, dirtyAfter));
+    }
+
+    // Method to re-decode a subsampled image at a finer subsampling once it is scaled up beyond its decoded pixels
+    private void refineResolution(CanvasImage img) {
+        if (img.sourceFile == null || img.subsampling <= 1 || pendingLoads.containsKey(img)) return;
+        CreationItem item = img.creationItem;
+        if (item.getScale() <= 1.0) return;     // Decoded pixels still cover the on-screen size
+
+        Dimension shownSize = new Dimension(
+            (int) Math.ceil(item.getImage().getWidth() * item.getScale()),
+            (int) Math.ceil(item.getImage().getHeight() * item.getScale()));
+        try {
+            RefineLoad load = new RefineLoad(img);
+            ImageDecodeService.DecodeTask task = ImageDecodeService.getInstance().decode(img.sourceFile, shownSize, load);
+            if (task.getSubsampling() >= img.subsampling) {
+                task.cancel();
+                return;
+            }
+            // Callbacks are posted to the EDT, so this is set before completed() can run
+            load.subsampling = task.getSubsampling();
+            pendingLoads.put(img, task);
+        } catch (IOException ex) {
+            // Keep showing the lower resolution image if the file can no longer be read
+        }
+    }
+
+    // Method to redraw an image whose pixels changed without its transform changing
+    private void refreshImage(CanvasImage img) {
+        if (!img.creationItem.isLive()) return;
+        SpriteCache.getInstance().invalidate(img.creationItem);
+        MipmapChain.invalidate(img.creationItem.getImage());
+        updateHitIndex(img);
+        repaintRegion(getDirtyRegion(img, dirtyBefore), null);
+    }
+
+    // Method to refresh an image's bounds in the hit-test index after it moves, scales, rotates or flips
+    private void updateHitIndex(CanvasImage img) {
+        // Padding the store's bounds by the handles' reach avoids building interaction geometry for every item
+        store.getBounds(img.creationItem.getIndex(), hitBoundsScratch);
+        double pad = ROTATE_HANDLE_OFFSET + HANDLE_SIZE;
+        hitBoundsScratch.setRect(hitBoundsScratch.x - pad, hitBoundsScratch.y - pad,
+            hitBoundsScratch.width + 2 * pad, hitBoundsScratch.height + 2 * pad);
+        hitIndex.update(img, hitBoundsScratch);
     }
 
     // Method to set up drag-and-drop functionality for the canvas
@@ -200,8 +887,7 @@ public class LeftCanvas extends JPanel {
                     @SuppressWarnings("unchecked")
                     List<File> files = (List<File>) t.getTransferData(DataFlavor.javaFileListFlavor);
                     if (!files.isEmpty()) {
-                        BufferedImage img = ImageIO.read(files.get(0));
-                        addImage(img);
+                        loadImageFromFile(files.get(0));
                         return true;
                     }
                 } catch (Exception ex) {
@@ -216,43 +902,54 @@ public class LeftCanvas extends JPanel {
     private void setupMouseListeners() {
         // Mouse adapter to handle mouse events for image manipulation
         MouseAdapter adapter = new MouseAdapter() {
-            private Point2D.Double toCanvasCoordinates(Point p) {
+            // Method to convert a component point to canvas coordinates, reusing the shared scratch point
+            private Point2D.Double toCanvasCoordinates(int x, int y) {
                 int canvasX = (getWidth() - canvasSize.width) / 2;
                 int canvasY = (getHeight() - canvasSize.height) / 2;
-                return new Point2D.Double(p.x - canvasX, p.y - canvasY);
+                canvasPoint.setLocation(x - canvasX, y - canvasY);
+                return canvasPoint;
             }
 
             // Method to handle mouse pressed events for selecting and manipulating images
             @Override
             public void mousePressed(MouseEvent e) {
                 requestFocusInWindow();
+                getDirtyRegion(selectedImage, dirtyBefore);
                 selectedImage = null;
 
-                Point2D.Double canvasPoint = toCanvasCoordinates(e.getPoint());
+                Point2D.Double canvasPoint = toCanvasCoordinates(e.getX(), e.getY());
 
-                for (int i = images.size() - 1; i >= 0; i--) {
-                    CanvasImage img = images.get(i);
+                // Only images whose indexed bounds cover the point can be hit; candidates come bottom to top
+                List<CanvasImage> candidates = hitIndex.query(canvasPoint.x, canvasPoint.y);
+                for (int i = candidates.size() - 1; i >= 0; i--) {
+                    CanvasImage img = candidates.get(i);
                     HandleType handle = getHandleAt(canvasPoint, img);
 
                     if (handle != HandleType.NONE) {
                         selectedImage = img;
                         activeHandle = handle;
-                        dragStartPoint = e.getPoint();
+                        dragStartPoint.setLocation(e.getX(), e.getY());
+                        dragStartState.set(img.creationItem);
+                        dragStarted = true;
 
-                        Point2D.Double center = selectedImage.getCenter();
-                        double dx = e.getX() - center.x;
-                        double dy = e.getY() - center.y;
+                        Geometry geometry = getGeometry(selectedImage);
+                        double dx = e.getX() - geometry.centerX;
+                        double dy = e.getY() - geometry.centerY;
 
                         // Handle the specific action based on the selected handle
                         switch (handle) {
                             case FLIP_LEFT:
                             case FLIP_RIGHT:
                                 selectedImage.creationItem.flipHorizontal();
+                                updateHitIndex(selectedImage);
+                                recordTransform(selectedImage);
                                 activeHandle = HandleType.NONE;
                                 break;
                             case FLIP_TOP:
                             case FLIP_BOTTOM:
                                 selectedImage.creationItem.flipVertical();
+                                updateHitIndex(selectedImage);
+                                recordTransform(selectedImage);
                                 activeHandle = HandleType.NONE;
                                 break;
                             case ROTATE:
@@ -267,15 +964,23 @@ public class LeftCanvas extends JPanel {
                             case NONE:
                                 break;
                         }
-                        repaint();
+                        repaintRegion(dirtyBefore, getDirtyRegion(selectedImage, dirtyAfter));
                         return;
                     }
                 }
+                dirtyAfter.setBounds(0, 0, 0, 0);
+                repaintRegion(dirtyBefore, dirtyAfter);
             }
 
             // Method to handle mouse released events to stop manipulation
             @Override
             public void mouseReleased(MouseEvent e) {
+                if (activeHandle != HandleType.NONE && selectedImage != null) {
+                    recordTransform(selectedImage);     // The whole drag becomes one undoable edit
+                }
+                if (activeHandle == HandleType.SCALE && selectedImage != null) {
+                    refineResolution(selectedImage);
+                }
                 activeHandle = HandleType.NONE;
             }
 
@@ -284,10 +989,11 @@ public class LeftCanvas extends JPanel {
             public void mouseDragged(MouseEvent e) {
                 if (selectedImage == null || activeHandle == HandleType.NONE) return;
 
-                Point2D.Double canvasPoint = toCanvasCoordinates(e.getPoint());
-                Point2D.Double center = selectedImage.getCenter();
-                double dx = canvasPoint.x - center.x;
-                double dy = canvasPoint.y - center.y;
+                getDirtyRegion(selectedImage, dirtyBefore);
+                Point2D.Double canvasPoint = toCanvasCoordinates(e.getX(), e.getY());
+                Geometry geometry = getGeometry(selectedImage);
+                double dx = canvasPoint.x - geometry.centerX;
+                double dy = canvasPoint.y - geometry.centerY;
 
                 // Calculate the new position based on the active handle
                 switch (activeHandle) {
@@ -295,8 +1001,8 @@ public class LeftCanvas extends JPanel {
                         double moveDx = e.getX() - dragStartPoint.x;
                         double moveDy = e.getY() - dragStartPoint.y;
                         
-                        double newX = selectedImage.position.x + moveDx;
-                        double newY = selectedImage.position.y + moveDy;
+                        double newX = selectedImage.creationItem.getX() + moveDx;
+                        double newY = selectedImage.creationItem.getY() + moveDy;
                         
                         double scaledWidth = selectedImage.creationItem.getImage().getWidth() * selectedImage.creationItem.getScale();
                         double scaledHeight = selectedImage.creationItem.getImage().getHeight() * selectedImage.creationItem.getScale();
@@ -304,14 +1010,15 @@ public class LeftCanvas extends JPanel {
                         newX = Math.max(0, Math.min(newX, canvasSize.width - scaledWidth));
                         newY = Math.max(0, Math.min(newY, canvasSize.height - scaledHeight));
                         
-                        selectedImage.position.x = newX;
-                        selectedImage.position.y = newY;
-                        dragStartPoint = e.getPoint();
+                        selectedImage.creationItem.setPosition(newX, newY);
+                        dragStartPoint.setLocation(e.getX(), e.getY());
                         break;
                         
                     case ROTATE:
                         double currentAngle = Math.atan2(dy, dx);
-                        selectedImage.creationItem.rotate(dragStartRotation + (currentAngle - dragStartAngle));
+                        // rotate() adds to the current rotation, so turn by what is left to reach the drag's angle
+                        double targetRotation = dragStartRotation + (currentAngle - dragStartAngle);
+                        selectedImage.creationItem.rotate(targetRotation - selectedImage.creationItem.getRotation());
                         break;
                         
                     case SCALE:
@@ -323,25 +1030,22 @@ public class LeftCanvas extends JPanel {
                         double scaledWidth2 = selectedImage.creationItem.getImage().getWidth() * selectedImage.creationItem.getScale();
                         double scaledHeight2 = selectedImage.creationItem.getImage().getHeight() * selectedImage.creationItem.getScale();
                         
-                        selectedImage.position.x = Math.max(0, Math.min(
-                            selectedImage.position.x,
-                            canvasSize.width - scaledWidth2
-                        ));
-                        selectedImage.position.y = Math.max(0, Math.min(
-                            selectedImage.position.y,
-                            canvasSize.height - scaledHeight2
-                        ));
+                        selectedImage.creationItem.setPosition(
+                            Math.max(0, Math.min(selectedImage.creationItem.getX(), canvasSize.width - scaledWidth2)),
+                            Math.max(0, Math.min(selectedImage.creationItem.getY(), canvasSize.height - scaledHeight2))
+                        );
                         break;
                     default:
                         break;
                 }
-                repaint();
+                updateHitIndex(selectedImage);
+                repaintRegion(dirtyBefore, getDirtyRegion(selectedImage, dirtyAfter));
             }
 
             // Method to handle mouse moved events to change the cursor based on the active handle
             @Override
             public void mouseMoved(MouseEvent e) {
-                Point2D.Double canvasPoint = toCanvasCoordinates(e.getPoint());
+                Point2D.Double canvasPoint = toCanvasCoordinates(e.getX(), e.getY());
 
                 if (selectedImage != null) {
                     HandleType handle = getHandleAt(canvasPoint, selectedImage);
@@ -377,80 +1081,212 @@ public class LeftCanvas extends JPanel {
         setFocusable(true);
     }
 
-    // Method to get the transformation for an image based on its position, rotation, and scale
-    private AffineTransform getTransformForImage(CanvasImage img) {
-        AffineTransform at = new AffineTransform();
-        Point2D.Double center = img.getCenter();
+    // Method to record the change to an image since dragStartState as one edit, if anything changed
+    private void recordTransform(CanvasImage img) {
+        if (!dragStarted) return;
+        if (!dragStartState.matches(img.creationItem)) {
+            history.add(new TransformEdit(img, new TransformState(dragStartState), new TransformState(img.creationItem)));
+        }
+        dragStarted = false;
+    }
+
+    // Method to bind the undo and redo shortcuts while the canvas has focus
+    private void setupKeyBindings() {
+        InputMap inputMap = getInputMap(WHEN_FOCUSED);
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        getActionMap().put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                undo();
+            }
+        });
+        getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                redo();
+            }
+        });
+    }
+
+    // Method to get an image's transform and handle geometry, building or refreshing it if the item changed
+    private Geometry getGeometry(CanvasImage img) {
+        SceneStore.Item item = img.creationItem;
+        Geometry geometry = img.geometry;
+        if (geometry == null) {
+            geometry = img.geometry = new Geometry();
+        } else if (geometry.cachedVersion == item.getVersion()) {
+            return geometry;
+        }
+
+        double w = item.getImage().getWidth();
+        double h = item.getImage().getHeight();
+        double scale = item.getScale();
+        geometry.centerX = item.getX() + w * scale / 2;
+        geometry.centerY = item.getY() + h * scale / 2;
+
+        AffineTransform at = geometry.transform;
+        store.getTransform(item.getIndex(), at);
+
+        geometry.inverse.setTransform(at);
+        try {
+            geometry.inverse.invert();
+            geometry.invertible = true;
+        } catch (NoninvertibleTransformException ex) {
+            geometry.invertible = false;
+        }
+
+        double[] c = geometry.corners;
+        c[0] = 0; c[1] = 0; c[2] = w; c[3] = 0;
+        c[4] = w; c[5] = h; c[6] = 0; c[7] = h;
+        at.transform(c, 0, c, 0, 4);
+
+        double[] hd = geometry.handles;
+        hd[0] = w / 2; hd[1] = 0;                                   // FLIP_TOP
+        hd[2] = w / 2; hd[3] = h;                                   // FLIP_BOTTOM
+        hd[4] = 0;     hd[5] = h / 2;                               // FLIP_LEFT
+        hd[6] = w;     hd[7] = h / 2;                               // FLIP_RIGHT
+        hd[8] = w / 2; hd[9] = -ROTATE_HANDLE_OFFSET / scale;       // ROTATE
+        at.transform(hd, 0, hd, 0, 5);
 
-        at.translate(img.position.x, img.position.y);
-        at.rotate(img.creationItem.getRotation(), center.x - img.position.x, center.y - img.position.y);
-        double scaleX = img.creationItem.isFlippedH() ? -img.creationItem.getScale() : img.creationItem.getScale();
-        double scaleY = img.creationItem.isFlippedV() ? -img.creationItem.getScale() : img.creationItem.getScale();
-        at.scale(scaleX, scaleY);
+        double minX = Math.min(Math.min(c[0], c[2]), Math.min(c[4], c[6]));
+        double maxX = Math.max(Math.max(c[0], c[2]), Math.max(c[4], c[6]));
+        double minY = Math.min(Math.min(c[1], c[3]), Math.min(c[5], c[7]));
+        double maxY = Math.max(Math.max(c[1], c[3]), Math.max(c[5], c[7]));
+        geometry.bounds.setRect(minX, minY, maxX - minX, maxY - minY);
 
-        return at;
+        double pad = HANDLE_SIZE / 2.0 + 2;
+        minX = Math.min(minX, hd[8]) - pad;
+        maxX = Math.max(maxX, hd[8]) + pad;
+        minY = Math.min(minY, hd[9]) - pad;
+        maxY = Math.max(maxY, hd[9]) + pad;
+        geometry.handleBounds.setRect(minX, minY, maxX - minX, maxY - minY);
+
+        geometry.cachedVersion = item.getVersion();
+        return geometry;
+    }
+
+    // Method to draw the item in a store slot by blitting its cached sprite, falling back to a direct transformed draw built in scratch
+    private void drawImage(Graphics2D g2, int index, AffineTransform scratch) {
+        SceneStore.Item item = store.get(index);
+        SpriteCache.Sprite sprite = SpriteCache.getInstance().getSprite(item);
+        if (sprite != null) {
+            int x = (int) Math.round(item.getX()) + sprite.offsetX;
+            int y = (int) Math.round(item.getY()) + sprite.offsetY;
+            g2.drawImage(sprite.raster, x, y, null);
+        } else {
+            BufferedImage source = item.getImage();
+            BufferedImage level = MipmapChain.getLevelFor(source, item.getScale());
+            store.getTransform(index, scratch);
+            scratch.scale((double) source.getWidth() / level.getWidth(), (double) source.getHeight() / level.getHeight());
+            g2.drawImage(level, scratch, null);
+        }
     }
 
     // Method to get the handle type at a specific point in the canvas
     private HandleType getHandleAt(Point2D.Double p, CanvasImage img) {
-        Shape bounds = getTransformForImage(img).createTransformedShape(new Rectangle(0, 0, img.creationItem.getImage().getWidth(), img.creationItem.getImage().getHeight()));
+        StudioEvents.HitTest event = StudioEvents.HIT_TEST.isEnabled() ? new StudioEvents.HitTest() : null;
+        if (event != null) event.begin();
+        HandleType handle = findHandleAt(p, img);
+        if (event != null && event.shouldCommit()) {
+            event.handle = handle.name();
+            event.commit();
+        }
+        return handle;
+    }
 
-        // Check if the point is within the bounds of the image
-        if (!bounds.contains(p)) {
-            Point2D rot = getTransformedHandle(img, HandleType.ROTATE);
-            if (rot != null && rot.distance(p) <= HANDLE_SIZE) {
+    // Method to find the handle type at a point, checking the image body first and then each handle
+    private HandleType findHandleAt(Point2D.Double p, CanvasImage img) {
+        Geometry geometry = getGeometry(img);
+        double[] hd = geometry.handles;
+
+        // Check if the point is within the bounds of the image by mapping it back into image space
+        boolean inside = false;
+        if (geometry.invertible) {
+            geometry.inverse.transform(p, localPoint);
+            inside = localPoint.x >= 0 && localPoint.y >= 0
+                && localPoint.x < img.creationItem.getImage().getWidth()
+                && localPoint.y < img.creationItem.getImage().getHeight();
+        }
+        if (!inside) {
+            if (Point2D.distance(hd[8], hd[9], p.x, p.y) <= HANDLE_SIZE) {
                 return HandleType.ROTATE;
             }
             return HandleType.NONE;
         }
 
-        // Check for each handle type if the point is close enough to be considered active
-        for (HandleType type : new HandleType[]{
-                HandleType.SCALE, HandleType.FLIP_TOP, HandleType.FLIP_BOTTOM,
-                HandleType.FLIP_LEFT, HandleType.FLIP_RIGHT}) {
-            Point2D handle = getTransformedHandle(img, type);
-            if (type == HandleType.SCALE) {
-                for (Point2D corner : getTransformedCorners(img)) {
-                    if (corner.distance(p) <= HANDLE_SIZE) return HandleType.SCALE;
-                }
-            } else if (handle != null && handle.distance(p) <= HANDLE_SIZE) {
-                return type;
-            }
+        // Check the corners, then each flip handle, to see if the point is close enough to be considered active
+        double[] c = geometry.corners;
+        for (int i = 0; i < 8; i += 2) {
+            if (Point2D.distance(c[i], c[i + 1], p.x, p.y) <= HANDLE_SIZE) return HandleType.SCALE;
+        }
+        for (int i = 0; i < FLIP_HANDLES.length; i++) {
+            if (Point2D.distance(hd[i * 2], hd[i * 2 + 1], p.x, p.y) <= HANDLE_SIZE) return FLIP_HANDLES[i];
         }
 
         return HandleType.MOVE;
     }
 
-    // Method to get the transformed corners of an image based on its position, rotation, and scale
-    private Point2D[] getTransformedCorners(CanvasImage img) {
-        double w = img.creationItem.getImage().getWidth();
-        double h = img.creationItem.getImage().getHeight();
-        Point2D[] corners = {
-                new Point2D.Double(0, 0), new Point2D.Double(w, 0),
-                new Point2D.Double(w, h), new Point2D.Double(0, h)
-        };
-        getTransformForImage(img).transform(corners, 0, corners, 0, 4);
-        return corners;
+    // Method to get the bounds of an image in canvas coordinates, optionally including its handle ring and rotate stalk; callers must not modify it
+    private Rectangle2D getImageBounds(CanvasImage img, boolean includeHandles) {
+        Geometry geometry = getGeometry(img);
+        return includeHandles ? geometry.handleBounds : geometry.bounds;
+    }
+
+    // Method to get the transform from canvas coordinates to component coordinates, matching paintComponent
+    private AffineTransform getCanvasTransform() {
+        int canvasX = (getWidth() - canvasSize.width) / 2;
+        int canvasY = (getHeight() - canvasSize.height) / 2;
+        canvasTransform.setToTranslation(canvasX + canvasSize.width / 2.0, canvasY + canvasSize.height / 2.0);
+        canvasTransform.rotate(canvasRotation);
+        canvasTransform.translate(-canvasSize.width / 2.0, -canvasSize.height / 2.0);
+        return canvasTransform;
     }
 
-    // Method to get the transformed position of a handle based on its type
-    private Point2D getTransformedHandle(CanvasImage img, HandleType type) {
-        double w = img.creationItem.getImage().getWidth();
-        double h = img.creationItem.getImage().getHeight();
-        Point2D.Double point = new Point2D.Double();
+    // Method to transform a rectangle and store the bounds of the result in out
+    private void transformBounds(AffineTransform at, Rectangle2D r, Rectangle2D out) {
+        double[] pts = boundsScratch;
+        pts[0] = r.getMinX(); pts[1] = r.getMinY(); pts[2] = r.getMaxX(); pts[3] = r.getMinY();
+        pts[4] = r.getMaxX(); pts[5] = r.getMaxY(); pts[6] = r.getMinX(); pts[7] = r.getMaxY();
+        at.transform(pts, 0, pts, 0, 4);
+        double minX = Math.min(Math.min(pts[0], pts[2]), Math.min(pts[4], pts[6]));
+        double maxX = Math.max(Math.max(pts[0], pts[2]), Math.max(pts[4], pts[6]));
+        double minY = Math.min(Math.min(pts[1], pts[3]), Math.min(pts[5], pts[7]));
+        double maxY = Math.max(Math.max(pts[1], pts[3]), Math.max(pts[5], pts[7]));
+        out.setFrameFromDiagonal(minX, minY, maxX, maxY);
+    }
 
-        // Set the point based on the handle type
-        switch (type) {
-            case FLIP_TOP: point.setLocation(w / 2, 0); break;
-            case FLIP_BOTTOM: point.setLocation(w / 2, h); break;
-            case FLIP_LEFT: point.setLocation(0, h / 2); break;
-            case FLIP_RIGHT: point.setLocation(w, h / 2); break;
-            case ROTATE: point.setLocation(w / 2, -ROTATE_HANDLE_OFFSET / img.creationItem.getScale()); break;
-            default: return null;
+    // Method to store the component area covered by an image and its handles in out, which is emptied for no image
+    private Rectangle getDirtyRegion(CanvasImage img, Rectangle out) {
+        if (img == null) {
+            out.setBounds(0, 0, 0, 0);
+            return out;
         }
+        transformBounds(getCanvasTransform(), getImageBounds(img, true), regionScratch);
+        int x1 = (int) Math.floor(regionScratch.getMinX()) - 1;
+        int y1 = (int) Math.floor(regionScratch.getMinY()) - 1;
+        int x2 = (int) Math.ceil(regionScratch.getMaxX()) + 1;
+        int y2 = (int) Math.ceil(regionScratch.getMaxY()) + 1;
+        out.setBounds(x1, y1, x2 - x1, y2 - y1);
+        return out;
+    }
 
-        getTransformForImage(img).transform(point, point);
-        return point;
+    // Method to repaint only the union of the old and new regions touched by an interaction
+    private void repaintRegion(Rectangle before, Rectangle after) {
+        boolean hasBefore = before != null && !before.isEmpty();
+        boolean hasAfter = after != null && !after.isEmpty();
+        if (hasBefore && hasAfter) {
+            int x1 = Math.min(before.x, after.x);
+            int y1 = Math.min(before.y, after.y);
+            int x2 = Math.max(before.x + before.width, after.x + after.width);
+            int y2 = Math.max(before.y + before.height, after.y + after.height);
+            repaint(x1, y1, x2 - x1, y2 - y1);
+        } else if (hasBefore) {
+            repaint(before.x, before.y, before.width, before.height);
+        } else if (hasAfter) {
+            repaint(after.x, after.y, after.width, after.height);
+        }
     }
 
     // Method to update the canvas size and create a new background image
@@ -468,8 +1304,12 @@ public class LeftCanvas extends JPanel {
     // Method to get the current canvas size
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        Graphics2D g2 = (Graphics2D) g.create();
+        long frameStart = System.nanoTime();
+        StudioEvents.Paint event = StudioEvents.PAINT.isEnabled() ? new StudioEvents.Paint() : null;
+        if (event != null) event.begin();
+        // Every pixel is filled below, so the background fill of super.paintComponent is skipped, and the graphics is drawn
+        // on directly rather than through a copy; each would allocate a new graphics on every frame
+        Graphics2D g2 = (Graphics2D) g;
         
         int canvasX = (getWidth() - canvasSize.width) / 2;
         int canvasY = (getHeight() - canvasSize.height) / 2;
@@ -483,49 +1323,87 @@ public class LeftCanvas extends JPanel {
         g2.setColor(Color.LIGHT_GRAY);
         g2.drawRect(canvasX, canvasY, canvasSize.width, canvasSize.height);
         
-        g2.translate(canvasX + canvasSize.width / 2.0, canvasY + canvasSize.height / 2.0);
-        g2.rotate(canvasRotation);
-        g2.translate(-canvasSize.width / 2.0, -canvasSize.height / 2.0);
+        AffineTransform canvasTransform = getCanvasTransform();
+        g2.transform(canvasTransform);
+
+        // Map the clip into canvas coordinates so items outside the dirty region are skipped
+        boolean clipped = false;
+        if (g.getClip() != null) {
+            g.getClipBounds(clipScratch);
+            inverseCanvasTransform.setTransform(canvasTransform);
+            try {
+                inverseCanvasTransform.invert();
+                transformBounds(inverseCanvasTransform, clipScratch, canvasClip);
+                clipped = true;
+            } catch (NoninvertibleTransformException ex) {
+                clipped = false;
+            }
+        }
 
-        for (CanvasImage img : images) {
-            g2.drawImage(img.creationItem.getImage(), getTransformForImage(img), null);
+        // Cull against the store's bounds arrays so off-screen items are never dereferenced
+        store.updateBounds();
+        double minX = clipped ? canvasClip.getMinX() : Double.NEGATIVE_INFINITY;
+        double minY = clipped ? canvasClip.getMinY() : Double.NEGATIVE_INFINITY;
+        double maxX = clipped ? canvasClip.getMaxX() : Double.POSITIVE_INFINITY;
+        double maxY = clipped ? canvasClip.getMaxY() : Double.POSITIVE_INFINITY;
+        int drawn = 0;
+        for (int i = 0, n = store.size(); i < n; i++) {
+            if (!store.intersects(i, minX, minY, maxX, maxY)) continue;
+            drawImage(g2, i, drawTransform);
+            drawn++;
         }
 
         if (selectedImage != null) {
-            AffineTransform original = g2.getTransform();
-            Point2D[] corners = getTransformedCorners(selectedImage);
+            Geometry geometry = getGeometry(selectedImage);
+            double[] c = geometry.corners;
+            double[] hd = geometry.handles;
 
             g2.setColor(Color.RED);
             for (int i = 0; i < 4; i++) {
-                g2.drawLine((int) corners[i].getX(), (int) corners[i].getY(),
-                            (int) corners[(i + 1) % 4].getX(), (int) corners[(i + 1) % 4].getY());
+                int j = (i + 1) % 4;
+                g2.drawLine((int) c[i * 2], (int) c[i * 2 + 1], (int) c[j * 2], (int) c[j * 2 + 1]);
             }
 
-            Point2D topMid = getTransformedHandle(selectedImage, HandleType.FLIP_TOP);
-            Point2D rot = getTransformedHandle(selectedImage, HandleType.ROTATE);
-            if (topMid != null && rot != null) {
-                g2.setColor(Color.BLACK);
-                g2.drawLine((int) topMid.getX(), (int) topMid.getY(), (int) rot.getX(), (int) rot.getY());
-            }
+            // Stalk from the top flip handle to the rotate handle
+            g2.setColor(Color.BLACK);
+            g2.drawLine((int) hd[0], (int) hd[1], (int) hd[8], (int) hd[9]);
 
-            List<Point2D> handlePoints = new ArrayList<>(List.of(corners));
-            handlePoints.add(getTransformedHandle(selectedImage, HandleType.FLIP_TOP));
-            handlePoints.add(getTransformedHandle(selectedImage, HandleType.FLIP_BOTTOM));
-            handlePoints.add(getTransformedHandle(selectedImage, HandleType.FLIP_LEFT));
-            handlePoints.add(getTransformedHandle(selectedImage, HandleType.FLIP_RIGHT));
-            handlePoints.add(getTransformedHandle(selectedImage, HandleType.ROTATE));
-
-            for (Point2D pt : handlePoints) {
-                if (pt == null) continue;
-                Ellipse2D circle = new Ellipse2D.Double(pt.getX() - HANDLE_SIZE / 2.0, pt.getY() - HANDLE_SIZE / 2.0, HANDLE_SIZE, HANDLE_SIZE);
-                g2.setColor(Color.WHITE);
-                g2.fill(circle);
-                g2.setColor(Color.BLACK);
-                g2.draw(circle);
+            for (int i = 0; i < 8; i += 2) {
+                drawHandle(g2, c[i], c[i + 1]);
+            }
+            for (int i = 0; i < 10; i += 2) {
+                drawHandle(g2, hd[i], hd[i + 1]);
             }
-            g2.setTransform(original);
         }
-        g2.dispose();
+        // Undo the canvas transform step by step, in reverse, for the overlay and anything Swing paints after
+        g2.translate(canvasSize.width / 2.0, canvasSize.height / 2.0);
+        g2.rotate(-canvasRotation);
+        g2.translate(-(canvasX + canvasSize.width / 2.0), -(canvasY + canvasSize.height / 2.0));
+
+        // Repaints of just the overlay are its own refreshes, not canvas frames
+        if (!hud.isOverlayOnly(g)) {
+            hud.recordFrame(frameStart, drawn, store.size() - drawn);
+        }
+        hud.paint(g);
+
+        if (event != null && event.shouldCommit()) {
+            Rectangle clip = g.getClipBounds();
+            event.canvas = "LeftCanvas";
+            event.clipWidth = clip != null ? clip.width : getWidth();
+            event.clipHeight = clip != null ? clip.height : getHeight();
+            event.items = store.size();
+            event.itemsDrawn = drawn;
+            event.commit();
+        }
+    }
+
+    // Method to draw a single handle circle centred on a point
+    private void drawHandle(Graphics2D g2, double x, double y) {
+        handleCircle.setFrame(x - HANDLE_SIZE / 2.0, y - HANDLE_SIZE / 2.0, HANDLE_SIZE, HANDLE_SIZE);
+        g2.setColor(Color.WHITE);
+        g2.fill(handleCircle);
+        g2.setColor(Color.BLACK);
+        g2.draw(handleCircle);
     }
 
     // Method to check if a point is within the bounds of the canvas
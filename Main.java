@@ -11,6 +11,7 @@ public class Main {
         LeftCanvas leftCanvas = new LeftCanvas();
         RightCanvas rightCanvas = new RightCanvas();
         Toolbar toolbar = new Toolbar(rightCanvas, leftCanvas);
+        AssetPalette palette = new AssetPalette(leftCanvas);
         
         // Create scroll panes with proper viewport settings
         JScrollPane leftScroll = new JScrollPane(leftCanvas);
@@ -30,12 +31,17 @@ public class Main {
         );
         splitPane.setDividerLocation(400);
         
+        // Dock the asset palette beside the canvases; it can be collapsed with the divider's arrows
+        JSplitPane paletteSplit = new JSplitPane(JSplitPane.HORIZONTAL_SPLIT, palette, splitPane);
+        paletteSplit.setOneTouchExpandable(true);
+        paletteSplit.setDividerLocation(palette.getPreferredSize().width);
+
         // Add components to the frame
-        frame.add(splitPane, BorderLayout.CENTER);
+        frame.add(paletteSplit, BorderLayout.CENTER);
         frame.add(toolbar, BorderLayout.SOUTH);
         
         // Set frame properties
-        frame.setSize(800, 600);
+        frame.setSize(800 + palette.getPreferredSize().width, 600);
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.setVisible(true);
     }
@@ -0,0 +1,84 @@
+// Lazily built chain of power-of-two downsampled copies of a source image for rendering at small scales.
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+public class MipmapChain {
+    private static final int MIN_LEVEL_SIZE = 8;   // Stop halving once either side would drop below this
+
+    // Chains are keyed by source image so items sharing an image also share its levels. A chain must never
+    // refer to its source, or the weak key could never be cleared: level 0 is the source itself and is not
+    // stored, so the source is passed in whenever a level has to be built from it
+    private static final Map<BufferedImage, MipmapChain> CHAINS = new WeakHashMap<>();
+
+    private final List<BufferedImage> levels = new ArrayList<>();   // Levels 1, 2, ... built so far
+
+    // Method to get the smallest level of a source image that still has at least the resolution needed at the given scale;
+    // level 0 is the source itself, and the chain is only created once a smaller level is needed
+    public static BufferedImage getLevelFor(BufferedImage source, double scale) {
+        int level = 0;
+        double s = Math.abs(scale);
+        while (s > 0 && s <= 0.5) {
+            s *= 2;
+            level++;
+        }
+        if (level == 0) return source;
+        MipmapChain chain;
+        synchronized (CHAINS) {
+            chain = CHAINS.computeIfAbsent(source, key -> new MipmapChain());
+        }
+        return chain.getLevel(source, level);
+    }
+
+    // Method to drop the levels of an image whose pixels have been changed in place
+    public static void invalidate(BufferedImage source) {
+        synchronized (CHAINS) {
+            CHAINS.remove(source);
+        }
+    }
+
+    // Method to get the number of images that currently have a chain
+    static int getChainCount() {
+        synchronized (CHAINS) {
+            return CHAINS.size();
+        }
+    }
+
+    // Method to get a level of the source by index, from 1 up, building any missing levels up to it
+    private synchronized BufferedImage getLevel(BufferedImage source, int level) {
+        while (levels.size() < level) {
+            BufferedImage previous = levels.isEmpty() ? source : levels.get(levels.size() - 1);
+            if (previous.getWidth() / 2 < MIN_LEVEL_SIZE || previous.getHeight() / 2 < MIN_LEVEL_SIZE) {
+                break;
+            }
+            levels.add(halve(previous));
+        }
+        return levels.isEmpty() ? source : levels.get(Math.min(level, levels.size()) - 1);
+    }
+
+    // Method to get a transform that draws a level in the source image's coordinate space
+    public static AffineTransform getLevelTransform(BufferedImage source, BufferedImage level) {
+        return AffineTransform.getScaleInstance(
+            (double) source.getWidth() / level.getWidth(),
+            (double) source.getHeight() / level.getHeight());
+    }
+
+    // Method to downsample an image by two; bilinear sampling at exactly half scale averages each 2x2 block
+    private static BufferedImage halve(BufferedImage src) {
+        int w = src.getWidth() / 2;
+        int h = src.getHeight() / 2;
+        BufferedImage dest = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = dest.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(src, 0, 0, w, h, null);
+        g2.dispose();
+        return dest;
+    }
+}
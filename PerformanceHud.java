@@ -0,0 +1,164 @@
+// Toggleable overlay showing a canvas's frame times, paint rate and culling alongside decode, heap and cache statistics.
+import javax.swing.*;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+public class PerformanceHud {
+    private static final int FRAME_HISTORY = 256;           // Frames the percentiles and paint rate are taken over
+    private static final int REFRESH_MILLIS = 500;          // How often the overlay updates while nothing else repaints
+    private static final int PADDING = 6;
+    private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final List<PerformanceHud> HUDS = new CopyOnWriteArrayList<>();
+    private static volatile boolean visible = false;        // Shared, so one key press shows or hides every canvas's overlay
+
+    private final JComponent owner;
+    private final String title;
+    // Frame samples live in plain ring buffers: they are written and read only on the Event Dispatch Thread,
+    // so recording a frame is a few array stores with no locks, and counters from other threads are read lock-free
+    private final long[] frameStarts = new long[FRAME_HISTORY];
+    private final long[] frameNanos = new long[FRAME_HISTORY];
+    private final long[] sortScratch = new long[FRAME_HISTORY];
+    private long frameCount = 0;
+    private int lastDrawn = 0;
+    private int lastCulled = 0;
+    private long lastHits = 0;
+    private long lastMisses = 0;
+    private double hitRate = Double.NaN;                    // Sprite cache hit rate over the last refresh in which it was used
+    private final Rectangle bounds = new Rectangle();       // Where the overlay was last drawn, in owner coordinates
+    private final Timer refreshTimer;
+
+    // Constructor to create an overlay for a canvas and bind F3 to show or hide it
+    public PerformanceHud(JComponent owner, String title) {
+        this.owner = owner;
+        this.title = title;
+        refreshTimer = new Timer(REFRESH_MILLIS, e -> refresh());
+        HUDS.add(this);
+
+        owner.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(KeyEvent.VK_F3, 0), "togglePerformanceHud");
+        owner.getActionMap().put("togglePerformanceHud", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                setVisible(!visible);
+            }
+        });
+    }
+
+    // Method to show or hide the overlay on every canvas
+    public static void setVisible(boolean show) {
+        visible = show;
+        ImageImporter.setDiagnosticsEnabled(show);
+        for (PerformanceHud hud : HUDS) {
+            if (show) {
+                hud.refreshTimer.start();
+            } else {
+                hud.refreshTimer.stop();
+            }
+            hud.owner.repaint();
+        }
+    }
+
+    public static boolean isVisible() {
+        return visible;
+    }
+
+    // Method to check if a repaint covers only the overlay, as the refresh timer's do; those are not counted as frames
+    public boolean isOverlayOnly(Graphics g) {
+        Rectangle clip = g.getClipBounds();
+        return visible && clip != null && !bounds.isEmpty() && bounds.contains(clip);
+    }
+
+    // Method to record one paint of the canvas: when it started, and how many items it drew and skipped as off-screen
+    public void recordFrame(long startNanos, int drawn, int culled) {
+        int slot = (int) (frameCount % FRAME_HISTORY);
+        frameStarts[slot] = startNanos;
+        frameNanos[slot] = System.nanoTime() - startNanos;
+        frameCount++;
+        lastDrawn = drawn;
+        lastCulled = culled;
+    }
+
+    // Method to draw the overlay in the top-left corner of the canvas's visible area, if it is shown
+    public void paint(Graphics g) {
+        if (!visible) return;
+        String[] lines = getLines();
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setFont(FONT);
+        g2.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        FontMetrics metrics = g2.getFontMetrics();
+        int width = 0;
+        for (String line : lines) {
+            width = Math.max(width, metrics.stringWidth(line));
+        }
+        Rectangle visibleRect = owner.getVisibleRect();
+        bounds.setBounds(visibleRect.x + 8, visibleRect.y + 8,
+            width + 2 * PADDING, lines.length * metrics.getHeight() + 2 * PADDING);
+        g2.setColor(BACKGROUND);
+        g2.fillRect(bounds.x, bounds.y, bounds.width, bounds.height);
+        g2.setColor(Color.WHITE);
+        int y = bounds.y + PADDING + metrics.getAscent();
+        for (String line : lines) {
+            g2.drawString(line, bounds.x + PADDING, y);
+            y += metrics.getHeight();
+        }
+        g2.dispose();
+    }
+
+    // Method to build the overlay text from the recorded frames and the shared services' counters
+    private String[] getLines() {
+        int samples = (int) Math.min(frameCount, FRAME_HISTORY);
+        String frameLine = "frame   -";
+        String rateLine = "paints  -";
+        if (samples > 0) {
+            System.arraycopy(frameNanos, 0, sortScratch, 0, samples);
+            Arrays.sort(sortScratch, 0, samples);
+            long p50 = sortScratch[(samples - 1) / 2];
+            long p99 = sortScratch[Math.max(0, (int) Math.ceil(samples * 0.99) - 1)];
+            frameLine = String.format(Locale.ROOT, "frame   p50 %.2f ms  p99 %.2f ms", p50 / 1e6, p99 / 1e6);
+
+            long now = System.nanoTime();
+            int lastSecond = 0;
+            for (int i = 0; i < samples; i++) {
+                if (now - frameStarts[i] <= 1_000_000_000L) lastSecond++;
+            }
+            rateLine = "paints  " + lastSecond + "/s" + (lastSecond == FRAME_HISTORY ? "+" : "");
+        }
+
+        ImageDecodeService decoder = ImageDecodeService.getInstance();
+        ImageImporter.ImportReport report = ImageImporter.getLastReport();
+        Runtime runtime = Runtime.getRuntime();
+        long usedMB = (runtime.totalMemory() - runtime.freeMemory()) >> 20;
+        return new String[] {
+            title + "  (F3 to hide)",
+            frameLine,
+            rateLine,
+            "items   " + lastDrawn + " drawn / " + lastCulled + " culled",
+            "decode  " + decoder.getQueueDepth() + " queued / " + decoder.getActiveCount() + " running",
+            "heap    " + usedMB + " / " + (runtime.maxMemory() >> 20) + " MB",
+            "sprites " + (Double.isNaN(hitRate) ? "-" : String.format(Locale.ROOT, "%.1f%% hit", hitRate * 100)),
+            "import  " + (report == null ? "-" : String.format(Locale.ROOT, "%.2f ms, blits %.1fx faster",
+                report.getConversionNanos() / 1e6, report.getBlitSpeedup()))
+        };
+    }
+
+    // Method run by the refresh timer: take the cache hit rate since the last refresh and redraw just the overlay
+    private void refresh() {
+        SpriteCache cache = SpriteCache.getInstance();
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        long lookups = (hits - lastHits) + (misses - lastMisses);
+        if (lookups > 0) hitRate = (double) (hits - lastHits) / lookups;
+        lastHits = hits;
+        lastMisses = misses;
+        if (bounds.isEmpty()) {
+            owner.repaint();
+        } else {
+            owner.repaint(bounds);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+// Rotates images by quarter turns by moving whole pixels in their int arrays, block by block and in parallel for large images.
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.util.stream.IntStream;
+
+public final class RasterRotator {
+    private static final int BLOCK = 64;                    // Side of the square blocks pixels are moved in, so the rows read and written stay in cache
+    private static final long PARALLEL_PIXELS = 1L << 20;   // Images smaller than this rotate faster on one thread
+
+    private RasterRotator() {
+    }
+
+    // Method to rotate an image clockwise by a number of quarter turns into a new image; any image type is accepted
+    public static BufferedImage rotate(BufferedImage src, int quarterTurns) {
+        int turns = Math.floorMod(quarterTurns, 4);
+        BufferedImage image = toIntImage(src);
+        int w = image.getWidth();
+        int h = image.getHeight();
+        BufferedImage dest = new BufferedImage(turns % 2 == 0 ? w : h, turns % 2 == 0 ? h : w, image.getType());
+        int[] from = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        int[] to = ((DataBufferInt) dest.getRaster().getDataBuffer()).getData();
+
+        // Each band of BLOCK source rows writes its own band of destination columns (or rows), so bands can run on any thread
+        int bands = (h + BLOCK - 1) / BLOCK;
+        IntStream range = IntStream.range(0, bands);
+        if ((long) w * h >= PARALLEL_PIXELS) range = range.parallel();
+        switch (turns) {
+            case 0: range.forEach(band -> copyBand(from, to, w, h, band)); break;
+            case 1: range.forEach(band -> rotateBand90(from, to, w, h, band)); break;
+            case 2: range.forEach(band -> rotateBand180(from, to, w, h, band)); break;
+            default: range.forEach(band -> rotateBand270(from, to, w, h, band)); break;
+        }
+        return dest;
+    }
+
+    // Method to get the transform that draws an image of the given size rotated clockwise by quarter turns, with its corner at the origin
+    public static AffineTransform getTransform(int quarterTurns, int width, int height) {
+        int turns = Math.floorMod(quarterTurns, 4);
+        AffineTransform transform = new AffineTransform();
+        switch (turns) {
+            case 1: transform.translate(height, 0); break;
+            case 2: transform.translate(width, height); break;
+            case 3: transform.translate(0, width); break;
+            default: break;
+        }
+        transform.quadrantRotate(turns);
+        return transform;
+    }
+
+    // Method to get an image whose pixels are one packed int each in a plain array, converting other layouts such as TYPE_CUSTOM
+    static BufferedImage toIntImage(BufferedImage src) {
+        if (isPackedInt(src)) return src;
+        int type = src.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        BufferedImage converted = new BufferedImage(src.getWidth(), src.getHeight(), type);
+        Graphics2D g2 = converted.createGraphics();
+        g2.setComposite(AlphaComposite.Src);    // Copy translucent pixels as they are rather than blending them onto transparency
+        g2.drawImage(src, 0, 0, null);
+        g2.dispose();
+        return converted;
+    }
+
+    // Method to check if an image is a standard int type whose array holds exactly its pixels, row after row
+    private static boolean isPackedInt(BufferedImage image) {
+        switch (image.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+            case BufferedImage.TYPE_INT_RGB:
+            case BufferedImage.TYPE_INT_BGR:
+                break;
+            default:
+                return false;
+        }
+        // Sub-images share their parent's array, offset and with a longer stride
+        WritableRaster raster = image.getRaster();
+        return raster.getDataBuffer() instanceof DataBufferInt
+            && raster.getDataBuffer().getNumBanks() == 1
+            && raster.getDataBuffer().getOffset() == 0
+            && raster.getSampleModelTranslateX() == 0
+            && raster.getSampleModelTranslateY() == 0
+            && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+            && ((SinglePixelPackedSampleModel) raster.getSampleModel()).getScanlineStride() == image.getWidth();
+    }
+
+    // Method to copy one band of rows unchanged
+    private static void copyBand(int[] from, int[] to, int w, int h, int band) {
+        int y0 = band * BLOCK;
+        int y1 = Math.min(h, y0 + BLOCK);
+        System.arraycopy(from, y0 * w, to, y0 * w, (y1 - y0) * w);
+    }
+
+    // Method to rotate one band of rows a quarter turn clockwise: (x, y) moves to (h - 1 - y, x) in an h-wide image
+    private static void rotateBand90(int[] from, int[] to, int w, int h, int band) {
+        int y0 = band * BLOCK;
+        int y1 = Math.min(h, y0 + BLOCK);
+        for (int x0 = 0; x0 < w; x0 += BLOCK) {
+            int x1 = Math.min(w, x0 + BLOCK);
+            for (int y = y0; y < y1; y++) {
+                int src = y * w;
+                int dst = h - 1 - y;
+                for (int x = x0; x < x1; x++) {
+                    to[x * h + dst] = from[src + x];
+                }
+            }
+        }
+    }
+
+    // Method to rotate one band of rows a half turn: row y is reversed into row h - 1 - y
+    private static void rotateBand180(int[] from, int[] to, int w, int h, int band) {
+        int y0 = band * BLOCK;
+        int y1 = Math.min(h, y0 + BLOCK);
+        for (int y = y0; y < y1; y++) {
+            int src = y * w;
+            int dst = (h - y) * w - 1;
+            for (int x = 0; x < w; x++) {
+                to[dst - x] = from[src + x];
+            }
+        }
+    }
+
+    // Method to rotate one band of rows three quarter turns clockwise: (x, y) moves to (y, w - 1 - x) in an h-wide image
+    private static void rotateBand270(int[] from, int[] to, int w, int h, int band) {
+        int y0 = band * BLOCK;
+        int y1 = Math.min(h, y0 + BLOCK);
+        for (int x0 = 0; x0 < w; x0 += BLOCK) {
+            int x1 = Math.min(w, x0 + BLOCK);
+            for (int y = y0; y < y1; y++) {
+                int src = y * w;
+                for (int x = x0; x < x1; x++) {
+                    to[(w - 1 - x) * h + y] = from[src + x];
+                }
+            }
+        }
+    }
+}
@@ -3,16 +3,168 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
+import java.awt.event.ActionEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.awt.geom.AffineTransform;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import javax.imageio.ImageIO;
 
 public class RightCanvas extends JPanel {
-    private BufferedImage drawingBuffer;
+    // Edit undoing a stroke: the tiles it changed, plus its entry in the stroke log
+    private class StrokeEdit implements EditHistory.Edit {
+        private final EditHistory.Edit tiles;
+        private final StrokeLog.Stroke stroke;
+
+        StrokeEdit(EditHistory.Edit tiles, StrokeLog.Stroke stroke) {
+            this.tiles = tiles;
+            this.stroke = stroke;
+        }
+
+        @Override
+        public void undo() {
+            tiles.undo();
+            strokeLog.remove(stroke);
+        }
+
+        @Override
+        public void redo() {
+            tiles.redo();
+            strokeLog.add(stroke);
+        }
+
+        @Override
+        public long getBytes() {
+            return tiles.getBytes() + stroke.getPointCount() * 8L + 48;
+        }
+
+        @Override
+        public void discard() {
+            tiles.discard();
+        }
+    }
+
+    // Edit undoing a clear: the erased tiles and strokes plus the uploaded image that was removed with them
+    private class ClearEdit implements EditHistory.Edit {
+        private final EditHistory.Edit drawing;         // Null if the drawing was already empty
+        private final List<StrokeLog.Stroke> strokes;
+        private final BufferedImage image;
+        private final Point position;
+        private final boolean selected;
+
+        ClearEdit(EditHistory.Edit drawing, List<StrokeLog.Stroke> strokes, BufferedImage image, Point position, boolean selected) {
+            this.drawing = drawing;
+            this.strokes = strokes;
+            this.image = image;
+            this.position = position;
+            this.selected = selected;
+        }
+
+        @Override
+        public void undo() {
+            if (drawing != null) drawing.undo();
+            strokeLog.setStrokes(strokes);
+            uploadedImage = image;
+            imagePosition = position != null ? new Point(position) : null;
+            imageSelected = selected;
+            invalidateDisplay();
+        }
+
+        @Override
+        public void redo() {
+            if (drawing != null) drawing.redo();
+            strokeLog.clear();
+            uploadedImage = null;
+            imagePosition = null;
+            imageSelected = false;
+            invalidateDisplay();
+        }
+
+        @Override
+        public long getBytes() {
+            long bytes = drawing != null ? drawing.getBytes() : 0;
+            return image != null ? bytes + (long) image.getWidth() * image.getHeight() * 4 : bytes;
+        }
+
+        @Override
+        public void discard() {
+            if (drawing != null) drawing.discard();
+        }
+    }
+
+    // Copy of both layers taken on the Event Dispatch Thread and rendered on any thread: the drawing's tiles are
+    // copied on write, and the stroke log and uploaded image are shared, as strokes and images are replaced rather than changed
+    public static final class Snapshot {
+        private final BufferedImage uploadedImage;
+        private final Point imagePosition;
+        private final TiledDrawing drawing;
+        private final StrokeLog strokeLog = new StrokeLog();
+
+        private Snapshot(RightCanvas canvas) {
+            uploadedImage = canvas.uploadedImage;
+            imagePosition = canvas.imagePosition != null ? new Point(canvas.imagePosition) : null;
+            drawing = canvas.drawingBuffer.snapshot();
+            strokeLog.setStrokes(canvas.strokeLog.getStrokes());
+        }
+
+        // Render both layers at a multiple of the drawing size; above 1 the strokes are replayed from the stroke log at that
+        // resolution rather than stretching the raster. The JPEG writer cannot encode an alpha channel; both layers sit on white
+        // anyway, so JPEGs are rendered opaque
+        public BufferedImage render(double scale, String format) {
+            boolean jpeg = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+            int width = Math.max(1, (int) Math.round(drawing.getWidth() * scale));
+            int height = Math.max(1, (int) Math.round(drawing.getHeight() * scale));
+            BufferedImage combined = new BufferedImage(width, height, jpeg ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g2d = combined.createGraphics();
+
+            // Draw white background
+            g2d.setColor(Color.WHITE);
+            g2d.fillRect(0, 0, width, height);
+
+            if (scale == 1) {
+                // Draw the uploaded image if it exists, then the pen drawings, tile by tile
+                if (uploadedImage != null && imagePosition != null) {
+                    g2d.drawImage(uploadedImage, imagePosition.x, imagePosition.y, null);
+                }
+                drawing.paint(g2d);
+                g2d.dispose();
+                return combined;
+            }
+
+            // Draw the uploaded image, which is a raster and can only be resampled
+            if (uploadedImage != null && imagePosition != null) {
+                Graphics2D ig = (Graphics2D) g2d.create();
+                ig.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                ig.scale(scale, scale);
+                ig.drawImage(uploadedImage, imagePosition.x, imagePosition.y, null);
+                ig.dispose();
+            }
+
+            // Replay the strokes on their own layer, so the eraser clears only pen drawings, then lay it on top
+            BufferedImage layer = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D lg = layer.createGraphics();
+            lg.scale(scale, scale);
+            strokeLog.render(lg);
+            lg.dispose();
+            g2d.drawImage(layer, 0, 0, null);
+
+            g2d.dispose();
+            return combined;
+        }
+    }
+
+    private static final long DEFAULT_UNDO_MEMORY_BYTES = 32L * 1024 * 1024;    // Compressed tiles kept in memory before spilling to disk
+    private static final long HISTORY_BUDGET_BYTES = 512L * 1024 * 1024;        // Total size of the undo history, memory and disk together
+    private static final int FRAME_MILLIS = 16;                                 // How often a stroke in progress is drawn and shown
+
+    private TiledDrawing drawingBuffer;                     // Pen drawings; only tiles that have been drawn on hold pixels
+    private final StrokeLog strokeLog = new StrokeLog();    // The same drawings as vectors; drawingBuffer is their raster at drawing size
     private BufferedImage uploadedImage;
     private Point imagePosition = null;
     private Point dragStartPoint;
@@ -22,6 +174,23 @@ public class RightCanvas extends JPanel {
     private Dimension drawingSize = new Dimension(800, 600);
     private boolean imageSelected = false;
     private boolean eraserMode = false;
+    private BufferedImage displayBuffer;                    // What the component shows, at display resolution; re-rendered only where it changed
+    private Rectangle displayDirty;                         // Area of displayBuffer that is out of date, or null if none is
+    private int renderedTiles;                              // Live tiles the last backbuffer render drew, for the paint event
+    private ImageDecodeService.DecodeTask pendingLoad;     // Background decode filling in uploadedImage, if any
+    private final PerformanceHud hud;                       // Frame statistics overlay, drawn over the backbuffer rather than into it
+    private final SpillStore undoStore = new SpillStore(DEFAULT_UNDO_MEMORY_BYTES);  // Compressed tiles of the edits in history
+    private final EditHistory history = new EditHistory(HISTORY_BUDGET_BYTES);
+    private TileDelta strokeDelta;                          // Tiles the stroke in progress has touched, as they were before it
+    private StrokeEngine stroke;                            // Stroke in progress, drawn in batches by strokeTimer
+    private final Timer strokeTimer = new Timer(FRAME_MILLIS, e -> flushStroke());
+    // Points of drag events merged into a later one while the Event Dispatch Thread was busy, as x, y pairs oldest first,
+    // each with the queued event it was merged into; written on the thread posting events, so guarded by skippedLock
+    private final Object skippedLock = new Object();
+    private int[] skippedPoints = new int[64];
+    private MouseEvent[] skippedInto = new MouseEvent[32];
+    private int skippedCount = 0;
+    private int[] takenPoints = new int[64];                // The points mouseDragged took for its event; Event Dispatch Thread only
 
     // Constructor initializes the canvas with a white background and sets up mouse listeners
     public RightCanvas() {
@@ -30,15 +199,13 @@ public class RightCanvas extends JPanel {
         initializeDrawingBuffer();
         setupMouseListeners();
         setupDragAndDrop();
+        setupKeyBindings();
+        hud = new PerformanceHud(this, "RightCanvas");
     }
 
-    // Initialize the drawing buffer with the specified size and type
+    // Initialize the drawing buffer with the specified size; its tiles are allocated as they are drawn on
     private void initializeDrawingBuffer() {
-        drawingBuffer = new BufferedImage(
-            drawingSize.width,
-            drawingSize.height,
-            BufferedImage.TYPE_INT_ARGB
-        );
+        drawingBuffer = new TiledDrawing(drawingSize.width, drawingSize.height);
     }
 
     // Set up mouse listeners for drawing, image selection, and drag-and-drop functionality
@@ -46,6 +213,7 @@ public class RightCanvas extends JPanel {
         addMouseListener(new MouseAdapter() {
             // Handle mouse press events for drawing or selecting images
             public void mousePressed(MouseEvent e) {
+                requestFocusInWindow();
                 if (imageSelected && uploadedImage != null && imagePosition != null) {
                     // Check if click is on the selected image
                     Rectangle imageRect = new Rectangle(
@@ -61,12 +229,33 @@ public class RightCanvas extends JPanel {
                 }
                 // If not on selected image, start drawing
                 previousPoint = e.getPoint();
+                strokeDelta = new TileDelta(drawingBuffer);
+                Point start = toBuffer(previousPoint);
+                stroke = new StrokeEngine(drawingBuffer, start.x, start.y, penColor, penSize, eraserMode, strokeDelta);
+                strokeTimer.start();
             }
             
             // Handle mouse release events to stop drawing or moving images
             public void mouseReleased(MouseEvent e) {
                 previousPoint = null;
                 dragStartPoint = null;
+                StrokeEngine finished = stroke;
+                if (stroke != null) {
+                    strokeTimer.stop();
+                    Rectangle drawn = stroke.finish();
+                    if (drawn != null) repaintBufferArea(drawn);
+                    stroke = null;
+                }
+                // The whole stroke becomes one edit holding only the tiles it changed; strokes that changed nothing are not logged either
+                if (strokeDelta != null) {
+                    EditHistory.Edit edit = strokeDelta.finish(undoStore, RightCanvas.this::repaintBufferArea);
+                    if (edit != null && finished != null) {
+                        StrokeLog.Stroke logged = strokeLog.add(finished.getPoints(),
+                            finished.isEraser() ? null : finished.getColor(), finished.getWidth());
+                        history.add(new StrokeEdit(edit, logged));
+                    }
+                    strokeDelta = null;
+                }
             }
             
             // Handle mouse click events for changing pen color or selecting images
@@ -92,9 +281,10 @@ public class RightCanvas extends JPanel {
                         );
                         if (imageRect.contains(e.getPoint())) {
                             imageSelected = !imageSelected;
-                            repaint();
-                        } else {
+                            invalidateDisplay(getImageArea());
+                        } else if (imageSelected) {
                             imageSelected = false;
+                            invalidateDisplay(getImageArea());
                         }
                     } else {
                         imageSelected = false;
@@ -106,50 +296,94 @@ public class RightCanvas extends JPanel {
         // Mouse motion listener for dragging images or drawing with pen/eraser
         addMouseMotionListener(new MouseAdapter() {
             public void mouseDragged(MouseEvent e) {
+                int skipped = takeSkippedPoints(e);
                 if (imageSelected && dragStartPoint != null && uploadedImage != null) {
-                    // Move the image
+                    // Move the image, re-rendering only where it was and where it is now
                     int dx = e.getX() - dragStartPoint.x;
                     int dy = e.getY() - dragStartPoint.y;
+                    invalidateDisplay(getImageArea());
                     imagePosition.x += dx;
                     imagePosition.y += dy;
                     dragStartPoint = e.getPoint();
-                    repaint();
-                } else if (previousPoint != null) {
-                    // Draw with pen or eraser
-                    Point currentPoint = e.getPoint();
-                    
-                    Graphics2D g2d = drawingBuffer.createGraphics();
-                    g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                    
-                    if (eraserMode) {
-                        // Erase by drawing with background color
-                        g2d.setComposite(AlphaComposite.Clear);
-                    } else {
-                        // Normal drawing with pen color
-                        g2d.setColor(penColor);
-                        g2d.setComposite(AlphaComposite.SrcOver);
+                    invalidateDisplay(getImageArea());
+                } else if (previousPoint != null && stroke != null) {
+                    // Extend the stroke with pen or eraser; strokeTimer draws and shows it once per frame
+                    for (int i = 0; i < skipped; i++) {
+                        stroke.lineTo(toBufferX(takenPoints[2 * i]), toBufferY(takenPoints[2 * i + 1]));
                     }
-                    
-                    g2d.setStroke(new BasicStroke(penSize, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
-                    
-                    double xScale = (double)drawingBuffer.getWidth() / getWidth();
-                    double yScale = (double)drawingBuffer.getHeight() / getHeight();
-                    
-                    int x1 = (int)(previousPoint.x * xScale);
-                    int y1 = (int)(previousPoint.y * yScale);
-                    int x2 = (int)(currentPoint.x * xScale);
-                    int y2 = (int)(currentPoint.y * yScale);
-                    
-                    g2d.drawLine(x1, y1, x2, y2);
-                    g2d.dispose();
-                    
-                    previousPoint = currentPoint;
-                    repaint();
+                    stroke.lineTo(toBufferX(e.getX()), toBufferY(e.getY()));
+                    previousPoint = e.getPoint();
                 }
             }
         });
     }
 
+    // Merge queued drag events into the newest one so a fast tablet cannot build a backlog, keeping the skipped points for the stroke
+    @Override
+    protected AWTEvent coalesceEvents(AWTEvent existingEvent, AWTEvent newEvent) {
+        if (newEvent.getID() != MouseEvent.MOUSE_DRAGGED) return null;
+        MouseEvent existing = (MouseEvent) existingEvent;
+        MouseEvent latest = (MouseEvent) newEvent;
+        if (existing.getModifiersEx() != latest.getModifiersEx()) return null;
+        // Runs on the thread posting the event; the points already merged into existing are the newest ones, so they
+        // move over to latest, and existing's own point follows them
+        synchronized (skippedLock) {
+            for (int i = skippedCount - 1; i >= 0 && skippedInto[i] == existing; i--) {
+                skippedInto[i] = latest;
+            }
+            if (skippedCount == skippedInto.length) {
+                skippedInto = Arrays.copyOf(skippedInto, skippedCount * 2);
+                skippedPoints = Arrays.copyOf(skippedPoints, skippedCount * 4);
+            }
+            skippedPoints[2 * skippedCount] = existing.getX();
+            skippedPoints[2 * skippedCount + 1] = existing.getY();
+            skippedInto[skippedCount++] = latest;
+        }
+        return latest;
+    }
+
+    // Method to move the points merged into a drag event into takenPoints, returning how many there are; they are the
+    // oldest ones held, since events are dispatched in the order they were posted
+    private int takeSkippedPoints(MouseEvent e) {
+        synchronized (skippedLock) {
+            int taken = 0;
+            while (taken < skippedCount && skippedInto[taken] == e) {
+                taken++;
+            }
+            if (taken == 0) return 0;
+            if (takenPoints.length < 2 * taken) {
+                takenPoints = new int[skippedPoints.length];
+            }
+            System.arraycopy(skippedPoints, 0, takenPoints, 0, 2 * taken);
+            System.arraycopy(skippedPoints, 2 * taken, skippedPoints, 0, 2 * (skippedCount - taken));
+            System.arraycopy(skippedInto, taken, skippedInto, 0, skippedCount - taken);
+            Arrays.fill(skippedInto, skippedCount - taken, skippedCount, null);  // Let the events be collected
+            skippedCount -= taken;
+            return taken;
+        }
+    }
+
+    // Draw the part of the stroke added since the last frame and repaint only the area it covers
+    private void flushStroke() {
+        if (stroke == null) return;
+        Rectangle drawn = stroke.flush();
+        if (drawn != null) repaintBufferArea(drawn);
+    }
+
+    // Convert a point on the component to the drawing buffer, which is stretched to fill the component
+    private Point toBuffer(Point p) {
+        return new Point(toBufferX(p.x), toBufferY(p.y));
+    }
+
+    // Convert one coordinate on the component to the drawing buffer, for the drag path that makes no Points
+    private int toBufferX(int x) {
+        return (int) (x * ((double) drawingBuffer.getWidth() / getWidth()));
+    }
+
+    private int toBufferY(int y) {
+        return (int) (y * ((double) drawingBuffer.getHeight() / getHeight()));
+    }
+
     // Set up drag-and-drop functionality for image uploads
     private void setupDragAndDrop() {
         setTransferHandler(new TransferHandler() {
@@ -181,6 +415,71 @@ public class RightCanvas extends JPanel {
         });
     }
 
+    // Bind the undo and redo shortcuts while the canvas has focus
+    private void setupKeyBindings() {
+        setFocusable(true);
+        InputMap inputMap = getInputMap(WHEN_FOCUSED);
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK), "undo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Y, InputEvent.CTRL_DOWN_MASK), "redo");
+        inputMap.put(KeyStroke.getKeyStroke(KeyEvent.VK_Z, InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK), "redo");
+        getActionMap().put("undo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                undo();
+            }
+        });
+        getActionMap().put("redo", new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                redo();
+            }
+        });
+    }
+
+    // Undo the most recent stroke or clear, if any; ignored while a stroke is being drawn
+    public void undo() {
+        if (stroke != null) return;
+        history.undo();
+    }
+
+    // Redo the most recently undone stroke or clear, if any; ignored while a stroke is being drawn
+    public void redo() {
+        if (stroke != null) return;
+        history.redo();
+    }
+
+    public boolean canUndo() {
+        return history.canUndo();
+    }
+
+    public boolean canRedo() {
+        return history.canRedo();
+    }
+
+    // Set how many bytes of compressed undo tiles stay in memory; older ones are moved to a temporary file
+    public void setUndoMemoryLimit(long bytes) {
+        undoStore.setMemoryCapBytes(bytes);
+    }
+
+    // Get the bytes of compressed undo tiles held in memory
+    public long getUndoMemoryBytes() {
+        return undoStore.getMemoryBytes();
+    }
+
+    // Get the bytes of compressed undo tiles spilled to disk
+    public long getUndoDiskBytes() {
+        return undoStore.getDiskBytes();
+    }
+
+    // Re-render and repaint the part of the component showing an area of the drawing buffer, which is stretched to fill the component
+    private void repaintBufferArea(Rectangle area) {
+        double xScale = (double) getWidth() / drawingBuffer.getWidth();
+        double yScale = (double) getHeight() / drawingBuffer.getHeight();
+        int x = (int) Math.floor(area.x * xScale) - 1;
+        int y = (int) Math.floor(area.y * yScale) - 1;
+        invalidateDisplay(new Rectangle(x, y, (int) Math.ceil(area.width * xScale) + 2, (int) Math.ceil(area.height * yScale) + 2));
+    }
+
     // Enable or disable eraser mode
     public void setEraserMode(boolean enabled) {
         this.eraserMode = enabled;
@@ -191,50 +490,158 @@ public class RightCanvas extends JPanel {
         return eraserMode;
     }
 
-    // Load an image from a file and center it on the canvas
+    // Load an image from a file and center it on the canvas, showing a placeholder while it decodes in the background
     public void loadImageFromFile(File file) throws IOException {
-        BufferedImage img = ImageIO.read(file);
-        if (img != null) {
-            uploadedImage = img;
-            // Center the image initially
-            imagePosition = new Point(
-                (getWidth() - img.getWidth()) / 2,
-                (getHeight() - img.getHeight()) / 2
-            );
-            repaint();
+        cancelPendingLoad();
+        ImageDecodeService.DecodeTask[] task = new ImageDecodeService.DecodeTask[1];
+        task[0] = ImageDecodeService.getInstance().decode(file, new ImageDecodeService.DecodeListener() {
+            // Show the rows decoded so far
+            @Override
+            public void progress(BufferedImage partial) {
+                invalidateDisplay(getImageArea());
+            }
+
+            // Swap the finished, display-compatible raster in for the placeholder
+            @Override
+            public void completed(BufferedImage image) {
+                if (pendingLoad == task[0]) pendingLoad = null;
+                uploadedImage = image;
+                invalidateDisplay();
+            }
+
+            // Drop the placeholder and report why the image could not be loaded
+            @Override
+            public void failed(Exception ex) {
+                if (pendingLoad == task[0]) pendingLoad = null;
+                uploadedImage = null;
+                imagePosition = null;
+                imageSelected = false;
+                invalidateDisplay();
+                JOptionPane.showMessageDialog(RightCanvas.this, "Error loading image: " + ex.getMessage());
+            }
+        });
+        pendingLoad = task[0];
+
+        BufferedImage img = pendingLoad.getPlaceholder();
+        uploadedImage = img;
+        // Center the image initially
+        imagePosition = new Point(
+            (getWidth() - img.getWidth()) / 2,
+            (getHeight() - img.getHeight()) / 2
+        );
+        invalidateDisplay();
+    }
+
+    // Cancel a background load that has not finished yet
+    private void cancelPendingLoad() {
+        if (pendingLoad != null) {
+            pendingLoad.cancel();
+            pendingLoad = null;
         }
     }
 
-    // Load an image from a BufferedImage object and center it on the canvas
+    // Paint the canvas from a backbuffer at display resolution, first re-rendering any parts of it that changed
     @Override
     protected void paintComponent(Graphics g) {
-        super.paintComponent(g);
-        
+        int width = getWidth();
+        int height = getHeight();
+        if (width <= 0 || height <= 0) return;
+        long frameStart = System.nanoTime();
+        StudioEvents.Paint event = StudioEvents.PAINT.isEnabled() ? new StudioEvents.Paint() : null;
+        if (event != null) event.begin();
+        // On a high-DPI screen the graphics is scaled, so the backbuffer gets one pixel per device pixel
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        double scaleX = transform.getScaleX();
+        double scaleY = transform.getScaleY();
+        int bufferWidth = (int) Math.ceil(width * scaleX);
+        int bufferHeight = (int) Math.ceil(height * scaleY);
+        if (displayBuffer == null || displayBuffer.getWidth() != bufferWidth || displayBuffer.getHeight() != bufferHeight) {
+            // Only a resize, or a move to a screen with another scale, re-renders everything
+            GraphicsConfiguration gc = getGraphicsConfiguration();
+            displayBuffer = gc != null
+                ? gc.createCompatibleImage(bufferWidth, bufferHeight)
+                : new BufferedImage(bufferWidth, bufferHeight, BufferedImage.TYPE_INT_RGB);
+            displayDirty = new Rectangle(0, 0, width, height);
+        }
+        Rectangle rendered = null;
+        if (displayDirty != null) {
+            rendered = displayDirty.intersection(new Rectangle(0, 0, width, height));
+            renderDisplay(rendered, scaleX, scaleY);
+            displayDirty = null;
+        }
+        g.drawImage(displayBuffer, 0, 0, width, height, null);
+
+        int drawnTiles = rendered != null ? renderedTiles : 0;
+        if (!hud.isOverlayOnly(g)) {
+            hud.recordFrame(frameStart, drawnTiles, drawingBuffer.getLiveTileCount() - drawnTiles);
+        }
+        hud.paint(g);
+
+        if (event != null && event.shouldCommit()) {
+            // Only the part re-rendered into the backbuffer costs more than a copy
+            event.canvas = "RightCanvas";
+            event.clipWidth = rendered != null && !rendered.isEmpty() ? rendered.width : 0;
+            event.clipHeight = rendered != null && !rendered.isEmpty() ? rendered.height : 0;
+            event.items = drawingBuffer.getLiveTileCount();
+            event.itemsDrawn = drawnTiles;
+            event.commit();
+        }
+    }
+
+    // Render an area of the component into the backbuffer: the white background, the uploaded image and the pen drawings on top
+    private void renderDisplay(Rectangle area, double scaleX, double scaleY) {
+        renderedTiles = 0;
+        if (area.isEmpty()) return;
+        Graphics2D g2d = displayBuffer.createGraphics();
+        g2d.scale(scaleX, scaleY);
+        g2d.clip(area);
+
         // Draw white background
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, getWidth(), getHeight());
-        
+        g2d.setColor(Color.WHITE);
+        g2d.fill(area);
+
         // Draw the uploaded image
         if (uploadedImage != null && imagePosition != null) {
-            g.drawImage(uploadedImage, imagePosition.x, imagePosition.y, this);
-            
+            g2d.drawImage(uploadedImage, imagePosition.x, imagePosition.y, null);
+
             // Draw selection border if image is selected
             if (imageSelected) {
-                Graphics2D g2d = (Graphics2D)g.create();
-                g2d.setColor(Color.BLUE);
-                g2d.setStroke(new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{5}, 0));
-                g2d.drawRect(imagePosition.x, imagePosition.y, uploadedImage.getWidth(), uploadedImage.getHeight());
-                g2d.dispose();
+                Graphics2D border = (Graphics2D) g2d.create();
+                border.setColor(Color.BLUE);
+                border.setStroke(new BasicStroke(2, BasicStroke.CAP_BUTT, BasicStroke.JOIN_BEVEL, 0, new float[]{5}, 0));
+                border.drawRect(imagePosition.x, imagePosition.y, uploadedImage.getWidth(), uploadedImage.getHeight());
+                border.dispose();
             }
         }
-        
-        // Draw the drawing buffer (pen drawings) on top
-        if (drawingBuffer != null) {
-            g.drawImage(drawingBuffer, 
-                0, 0, getWidth(), getHeight(),
-                0, 0, drawingBuffer.getWidth(), drawingBuffer.getHeight(),
-                this);
-        }
+
+        // Draw the drawing buffer (pen drawings) on top, visiting only the live tiles under the area
+        double xScale = (double) getWidth() / drawingBuffer.getWidth();
+        double yScale = (double) getHeight() / drawingBuffer.getHeight();
+        int x = (int) Math.floor(area.x / xScale) - 1;
+        int y = (int) Math.floor(area.y / yScale) - 1;
+        Rectangle bufferArea = new Rectangle(x, y,
+            (int) Math.ceil(area.width / xScale) + 2, (int) Math.ceil(area.height / yScale) + 2);
+        renderedTiles = drawingBuffer.paintScaled(g2d, bufferArea, xScale, yScale);
+        g2d.dispose();
+    }
+
+    // Mark the whole backbuffer as out of date and repaint the component
+    private void invalidateDisplay() {
+        invalidateDisplay(new Rectangle(0, 0, getWidth(), getHeight()));
+    }
+
+    // Mark an area of the backbuffer as out of date and repaint just that area
+    private void invalidateDisplay(Rectangle area) {
+        if (area == null || area.isEmpty()) return;
+        displayDirty = displayDirty == null ? new Rectangle(area) : displayDirty.union(area);
+        repaint(area);
+    }
+
+    // Get the area the uploaded image and its selection border cover, or null if there is no image
+    private Rectangle getImageArea() {
+        if (uploadedImage == null || imagePosition == null) return null;
+        return new Rectangle(imagePosition.x - 2, imagePosition.y - 2,
+            uploadedImage.getWidth() + 4, uploadedImage.getHeight() + 4);
     }
 
     // Get the preferred size of the canvas for layout purposes
@@ -260,44 +667,58 @@ public class RightCanvas extends JPanel {
 
     // Clear the canvas, removing all drawings and uploaded images
     public void clearCanvas() {
-        // Clear the drawing buffer
-        Graphics2D g2d = drawingBuffer.createGraphics();
-        g2d.setComposite(AlphaComposite.Clear);
-        g2d.fillRect(0, 0, drawingBuffer.getWidth(), drawingBuffer.getHeight());
-        g2d.dispose();
+        // An upload still decoding is only a placeholder; it is abandoned rather than kept for undo, which would restore a gray box
+        if (pendingLoad != null) {
+            cancelPendingLoad();
+            uploadedImage = null;
+            imagePosition = null;
+            imageSelected = false;
+        }
+
+        // Clear the drawing buffer, saving the tiles that had something on them for undo; empty tiles are never visited
+        TileDelta delta = new TileDelta(drawingBuffer);
+        delta.captureAll();
+        drawingBuffer.clear();
+        EditHistory.Edit drawing = delta.finish(undoStore, this::repaintBufferArea);
+        if (drawing != null || uploadedImage != null) {
+            history.add(new ClearEdit(drawing, strokeLog.getStrokes(), uploadedImage, imagePosition, imageSelected));
+        }
+        strokeLog.clear();
         
         // Clear the uploaded image
         uploadedImage = null;
         imagePosition = null;
         imageSelected = false;
         
-        repaint();
+        invalidateDisplay();
+    }
+
+    // Take a copy of both layers that stays unchanged while drawing continues: tiles are shared until either side draws on them.
+    // An uploaded image is written into by its decode until it appears, so there is no snapshot while it is still loading
+    public Snapshot snapshot() throws IOException {
+        if (pendingLoad != null) {
+            throw new IOException("The image is still loading; try again once it appears.");
+        }
+        return new Snapshot(this);
     }
 
     // Save the current canvas to a file in the specified format (e.g., PNG, JPEG)
     public void saveCanvasToFile(File file, String format) throws IOException {
-        // Create a new image combining both layers
-        BufferedImage combined = new BufferedImage(
-            drawingBuffer.getWidth(),
-            drawingBuffer.getHeight(),
-            BufferedImage.TYPE_INT_ARGB
-        );
-        
-        Graphics2D g2d = combined.createGraphics();
-        
-        // Draw white background
-        g2d.setColor(Color.WHITE);
-        g2d.fillRect(0, 0, combined.getWidth(), combined.getHeight());
-        
-        // Draw the uploaded image if it exists
-        if (uploadedImage != null && imagePosition != null) {
-            g2d.drawImage(uploadedImage, imagePosition.x, imagePosition.y, null);
-        }
-        
-        // Draw the pen drawings
-        g2d.drawImage(drawingBuffer, 0, 0, null);
-        
-        g2d.dispose();
-        ImageIO.write(combined, format, file);
+        saveCanvasToFile(file, format, 1);
+    }
+
+    // Save the canvas at a multiple of the drawing size, e.g. for print, on the calling thread; the toolbar saves in the background instead
+    public void saveCanvasToFile(File file, String format, double scale) throws IOException {
+        ImageSaver.write(snapshot().render(scale, format), format, file, "RightCanvas", null);
+    }
+
+    // Get the number of strokes in the stroke log
+    public int getStrokeCount() {
+        return strokeLog.size();
+    }
+
+    // Get the number of points the stroke log keeps after simplification
+    public int getStrokePointCount() {
+        return strokeLog.getPointCount();
     }
 }
\ No newline at end of file
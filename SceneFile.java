@@ -0,0 +1,395 @@
+// Versioned binary scene format for LeftCanvas, storing each distinct source image once and decoding it lazily on load.
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.WritableRaster;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+
+/*
+ * Layout, all numbers big-endian:
+ *
+ *   header   magic "DSSC", u16 version, u16 reserved, i32 canvas width, i32 canvas height, f64 canvas rotation
+ *   assets   i32 count, then per asset: 32-byte SHA-256 of the ARGB pixels, i32 width, i32 height, i64 data offset, i32 data length
+ *   items    i32 count, then per item in stacking order: u8 type, u8 flags (1 = flipH, 2 = flipV), i32 asset index,
+ *            f64 x, f64 y, f64 rotation, f64 scale
+ *   data     encoded asset bytes (the original file when it was decoded at full resolution, otherwise PNG)
+ *
+ * An item's scale is relative to its asset's width and height, which is the size of the image it had when saved.
+ */
+public class SceneFile {
+    public static final String EXTENSION = "scene";
+
+    private static final int MAGIC = 0x44535343;           // "DSSC"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 4 + 4 + 8;
+    private static final int ASSET_ENTRY_BYTES = 32 + 4 + 4 + 8 + 4;
+    private static final int ITEM_ENTRY_BYTES = 1 + 1 + 4 + 8 * 4;
+    private static final int FLAG_FLIP_H = 1;
+    private static final int FLAG_FLIP_V = 2;
+    private static final String[] TYPES = {"animal", "flower", "custom"};
+
+    // A distinct source image and the bytes it is stored as
+    private static class Asset {
+        final byte[] hash;
+        final byte[] data;
+        final int width;
+        final int height;
+
+        Asset(byte[] hash, byte[] data, int width, int height) {
+            this.hash = hash;
+            this.data = data;
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    // One item as written to the file
+    private static class ItemRecord {
+        final int type;
+        final int flags;
+        final int asset;
+        final double x, y, rotation, scale;
+
+        ItemRecord(int type, int flags, int asset, double x, double y, double rotation, double scale) {
+            this.type = type;
+            this.flags = flags;
+            this.asset = asset;
+            this.x = x;
+            this.y = y;
+            this.rotation = rotation;
+            this.scale = scale;
+        }
+    }
+
+    // Method to write the canvas's scene to a file
+    public static void save(LeftCanvas canvas, File file) throws IOException {
+        if (canvas.hasPendingLoads()) {
+            throw new IOException("Some images are still loading; try again once they appear.");
+        }
+
+        List<Asset> assets = new ArrayList<>();
+        List<ItemRecord> items = new ArrayList<>();
+        Map<BufferedImage, Integer> assetsByImage = new IdentityHashMap<>();   // Skips re-encoding images shared by items
+        Map<String, Integer> assetsByHash = new HashMap<>();                   // Stores identical pixels only once
+
+        canvas.visitImages((item, x, y, sourceFile, subsampling) -> {
+            BufferedImage image = item.getImage();
+            Integer index = assetsByImage.get(image);
+            if (index == null) {
+                // Hashing pixels rather than encoded bytes finds duplicates before paying for an encode
+                byte[] hash = hashPixels(ImageImporter.getExportSource(image));
+                String key = toHex(hash);
+                index = assetsByHash.get(key);
+                if (index == null) {
+                    index = assets.size();
+                    byte[] data = encodeAsset(image, sourceFile, subsampling);
+                    assets.add(new Asset(hash, data, image.getWidth(), image.getHeight()));
+                    assetsByHash.put(key, index);
+                }
+                assetsByImage.put(image, index);
+            }
+            int flags = (item.isFlippedH() ? FLAG_FLIP_H : 0) | (item.isFlippedV() ? FLAG_FLIP_V : 0);
+            items.add(new ItemRecord(typeCode(item.getType()), flags, index, x, y, item.getRotation(), item.getScale()));
+        });
+
+        File temp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+            Dimension size = canvas.getCanvasSize();
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(size.width);
+            out.writeInt(size.height);
+            out.writeDouble(canvas.getCanvasRotation());
+
+            // Asset data follows both tables, so each offset is known before anything is written
+            long offset = HEADER_BYTES + 4 + (long) assets.size() * ASSET_ENTRY_BYTES + 4 + (long) items.size() * ITEM_ENTRY_BYTES;
+            out.writeInt(assets.size());
+            for (Asset asset : assets) {
+                out.write(asset.hash);
+                out.writeInt(asset.width);
+                out.writeInt(asset.height);
+                out.writeLong(offset);
+                out.writeInt(asset.data.length);
+                offset += asset.data.length;
+            }
+
+            out.writeInt(items.size());
+            for (ItemRecord item : items) {
+                out.writeByte(item.type);
+                out.writeByte(item.flags);
+                out.writeInt(item.asset);
+                out.writeDouble(item.x);
+                out.writeDouble(item.y);
+                out.writeDouble(item.rotation);
+                out.writeDouble(item.scale);
+            }
+
+            for (Asset asset : assets) {
+                out.write(asset.data);
+            }
+        } catch (IOException ex) {
+            temp.delete();
+            throw ex;
+        }
+        // Replace the old scene only once the new one is complete
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Method to replace the canvas's contents with a scene file; items appear at once and their images decode in the background
+    public static void load(LeftCanvas canvas, File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file.getName() + " is too large to open.");
+            }
+            // Read into memory rather than mapped: a mapping lasts until it is garbage-collected, and on Windows a mapped
+            // file cannot be replaced, so saving over the scene just opened would fail. The file is closed on return;
+            // assets are still only decoded later, from their slices of this buffer
+            buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+        }
+
+        int width, height;
+        double rotation;
+        int[] assetWidths, assetHeights;
+        long[] assetOffsets;
+        int[] assetLengths;
+        List<ItemRecord> items = new ArrayList<>();
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a scene file.");
+            }
+            int version = buffer.getShort() & 0xffff;
+            if (version != VERSION) {
+                throw new IOException("Unsupported scene file version " + version + ".");
+            }
+            buffer.getShort();
+            width = buffer.getInt();
+            height = buffer.getInt();
+            rotation = buffer.getDouble();
+            if (width <= 0 || height <= 0) {
+                throw new IOException(file.getName() + " is damaged.");
+            }
+
+            int assetCount = readCount(buffer, ASSET_ENTRY_BYTES);
+            assetWidths = new int[assetCount];
+            assetHeights = new int[assetCount];
+            assetOffsets = new long[assetCount];
+            assetLengths = new int[assetCount];
+            for (int i = 0; i < assetCount; i++) {
+                buffer.position(buffer.position() + 32);   // Hash is only needed when writing
+                assetWidths[i] = buffer.getInt();
+                assetHeights[i] = buffer.getInt();
+                assetOffsets[i] = buffer.getLong();
+                assetLengths[i] = buffer.getInt();
+                if (assetOffsets[i] < 0 || assetLengths[i] < 0 || assetOffsets[i] + assetLengths[i] > buffer.limit()) {
+                    throw new IOException(file.getName() + " is truncated.");
+                }
+            }
+
+            int itemCount = readCount(buffer, ITEM_ENTRY_BYTES);
+            for (int i = 0; i < itemCount; i++) {
+                int type = buffer.get() & 0xff;
+                int flags = buffer.get() & 0xff;
+                int asset = buffer.getInt();
+                if (type >= TYPES.length || asset < 0 || asset >= assetCount) {
+                    throw new IOException(file.getName() + " is damaged.");
+                }
+                items.add(new ItemRecord(type, flags, asset,
+                    buffer.getDouble(), buffer.getDouble(), buffer.getDouble(), buffer.getDouble()));
+            }
+        } catch (BufferUnderflowException ex) {
+            throw new IOException(file.getName() + " is truncated.");
+        }
+
+        // Only the header of each asset is read now; the pixels are decoded in the background, shared by its items
+        ImageDecodeService.DecodeTask[] tasks = new ImageDecodeService.DecodeTask[assetWidths.length];
+        List<ImageDecodeService.DecodeTask> itemTasks = new ArrayList<>(items.size());
+        List<CreationItem> creationItems = new ArrayList<>(items.size());
+        double[] positions = new double[items.size() * 2];
+        try {
+            for (int i = 0; i < items.size(); i++) {
+                ItemRecord record = items.get(i);
+                ImageDecodeService.DecodeTask task = tasks[record.asset];
+                if (task == null) {
+                    ByteBuffer data = buffer.duplicate();
+                    data.position((int) assetOffsets[record.asset]);
+                    data.limit((int) (assetOffsets[record.asset] + assetLengths[record.asset]));
+                    // A memory cache avoids ImageIO copying the asset into a temporary file first
+                    ImageInputStream stream = new MemoryCacheImageInputStream(new ByteBufferInputStream(data.slice()));
+                    task = ImageDecodeService.getInstance().decodeQueued(stream, null, null);
+                    tasks[record.asset] = task;
+                }
+                BufferedImage placeholder = task.getPlaceholder();
+                CreationItem item = LeftCanvas.createItem(placeholder, TYPES[record.type]);
+                item.scale(record.scale);
+                // Keep the saved on-screen size even if the stored image decodes at a different size
+                if (placeholder.getWidth() != assetWidths[record.asset]) {
+                    item.scale((double) assetWidths[record.asset] / placeholder.getWidth());
+                }
+                item.rotate(record.rotation);
+                if ((record.flags & FLAG_FLIP_H) != 0) item.flipHorizontal();
+                if ((record.flags & FLAG_FLIP_V) != 0) item.flipVertical();
+                creationItems.add(item);
+                itemTasks.add(task);
+                positions[i * 2] = record.x;
+                positions[i * 2 + 1] = record.y;
+            }
+        } catch (IOException | RuntimeException ex) {
+            for (ImageDecodeService.DecodeTask task : tasks) {
+                if (task != null) task.cancel();
+            }
+            throw ex;
+        }
+
+        canvas.clearCanvas();
+        canvas.setCanvasSize(width, height);
+        canvas.setCanvasRotation(rotation);
+        canvas.placeDecodingItems(creationItems, positions, itemTasks);
+    }
+
+    // Method to get the bytes an image is stored as: its source file when decoded at full size, otherwise lossless PNG
+    private static byte[] encodeAsset(BufferedImage image, File sourceFile, int subsampling) throws IOException {
+        if (sourceFile != null && subsampling == 1 && sourceFile.isFile()) {
+            return Files.readAllBytes(sourceFile.toPath());
+        }
+        BufferedImage source = ImageImporter.getExportSource(image);
+        if (!ImageImporter.hasExportSource(image) && isFullyOpaque(source)) {
+            // Dropping an unused alpha channel keeps the file smaller and stops the importer retaining a copy on load
+            BufferedImage rgb = new BufferedImage(source.getWidth(), source.getHeight(), BufferedImage.TYPE_INT_RGB);
+            Graphics2D g2 = rgb.createGraphics();
+            g2.drawImage(source, 0, 0, null);
+            g2.dispose();
+            source = rgb;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (!ImageIO.write(source, "png", bytes)) {
+            throw new IOException("No PNG writer is available.");
+        }
+        return bytes.toByteArray();
+    }
+
+    // Method to read a table's entry count, rejecting counts the remaining bytes cannot hold
+    private static int readCount(ByteBuffer buffer, int entryBytes) throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || (long) count * entryBytes > buffer.remaining()) {
+            throw new IOException("Scene file is damaged.");
+        }
+        return count;
+    }
+
+    // Method to get the stored code for an item type
+    private static int typeCode(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equalsIgnoreCase(type)) return i;
+        }
+        return TYPES.length - 1;
+    }
+
+    // Method to check whether an image with an alpha channel has no pixel that is even partly transparent
+    private static boolean isFullyOpaque(BufferedImage image) {
+        WritableRaster alpha = image.getAlphaRaster();
+        if (alpha == null) return false;
+        int w = alpha.getWidth();
+        int[] row = new int[w];
+        for (int y = 0; y < alpha.getHeight(); y++) {
+            alpha.getSamples(0, y, w, 1, 0, row);
+            for (int a : row) {
+                if (a != 255) return false;
+            }
+        }
+        return true;
+    }
+
+    // Method to hash an image's size and ARGB pixels, so identical images match whatever raster layout they use
+    private static byte[] hashPixels(BufferedImage image) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);    // Every Java platform is required to provide SHA-256
+        }
+        int w = image.getWidth();
+        int h = image.getHeight();
+        ByteBuffer bytes = ByteBuffer.allocate(Math.max(8, w * 4));     // Also holds the size, which a 1-pixel row would not
+        bytes.putInt(w).putInt(h).flip();
+        digest.update(bytes);
+        int[] row = new int[w];
+        for (int y = 0; y < h; y++) {
+            image.getRGB(0, y, w, 1, row, 0, w);
+            bytes.clear();
+            bytes.asIntBuffer().put(row);
+            digest.update(bytes);
+        }
+        return digest.digest();
+    }
+
+    // Method to format a hash as a map key
+    private static String toHex(byte[] hash) {
+        StringBuilder sb = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    // Input stream over a slice of the loaded file, so decoding reads the asset's bytes without copying them
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public long skip(long n) {
+            int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + skipped);
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
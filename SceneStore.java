@@ -0,0 +1,514 @@
+// Struct-of-arrays store for canvas items, exposing each slot through a flyweight CreationItem view.
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+public class SceneStore<T> implements SceneView {
+    // Flyweight view of one slot; all state lives in the store's arrays and the index follows the slot as items are removed
+    public static final class Item implements CreationItem {
+        private final SceneStore<?> store;
+        private int index;
+
+        private Item(SceneStore<?> store, int index) {
+            this.store = store;
+            this.index = index;
+        }
+
+        // Method to get the slot this item occupies, which is also its stacking order; -1 once removed
+        public int getIndex() {
+            return index;
+        }
+
+        // Method to check whether the item is still in its store
+        public boolean isLive() {
+            return index >= 0;
+        }
+
+        public double getX() {
+            return store.x[index];
+        }
+
+        public double getY() {
+            return store.y[index];
+        }
+
+        // Method to move the item's top-left corner
+        public void setPosition(double x, double y) {
+            store.x[index] = x;
+            store.y[index] = y;
+            store.version[index]++;
+        }
+
+        // Method to set the rotation, scale and flips outright, e.g. to restore them on undo
+        public void setTransform(double rotation, double scale, boolean flipH, boolean flipV) {
+            store.rotation[index] = rotation;
+            store.scale[index] = scale;
+            store.flags[index] = (byte) ((store.flags[index] & TYPE_MASK) | (flipH ? FLIP_H : 0) | (flipV ? FLIP_V : 0));
+            store.version[index]++;
+        }
+
+        @Override
+        public BufferedImage getImage() {
+            return store.imageTable[store.imageId[index]];
+        }
+
+        // Method to replace the image, keeping the transform state
+        @Override
+        public void setImage(BufferedImage image) {
+            int previous = store.imageId[index];
+            store.imageId[index] = store.intern(image);
+            store.releaseImage(previous);
+            store.version[index]++;
+        }
+
+        @Override
+        public String getType() {
+            return TYPE_NAMES[(store.flags[index] & TYPE_MASK) >> TYPE_SHIFT];
+        }
+
+        @Override
+        public void rotate(double radians) {
+            store.rotation[index] += radians;
+            store.version[index]++;
+        }
+
+        @Override
+        public void scale(double scaleFactor) {
+            store.scale[index] *= scaleFactor;
+            store.version[index]++;
+        }
+
+        @Override
+        public void flipHorizontal() {
+            store.flags[index] ^= FLIP_H;
+            store.version[index]++;
+        }
+
+        @Override
+        public void flipVertical() {
+            store.flags[index] ^= FLIP_V;
+            store.version[index]++;
+        }
+
+        @Override
+        public double getRotation() {
+            return store.rotation[index];
+        }
+
+        @Override
+        public double getScale() {
+            return store.scale[index];
+        }
+
+        @Override
+        public boolean isFlippedH() {
+            return (store.flags[index] & FLIP_H) != 0;
+        }
+
+        @Override
+        public boolean isFlippedV() {
+            return (store.flags[index] & FLIP_V) != 0;
+        }
+
+        // Method to get the version counter, bumped whenever the slot's position, image or transform changes
+        @Override
+        public long getVersion() {
+            return store.version[index];
+        }
+    }
+
+    // Copy of the slots' positions, transforms and bounds at one moment, sharing their images; it can be read on any thread
+    // while the store keeps changing. Images are replaced rather than drawn on, except a decode placeholder, which its
+    // decode fills in until the image appears; take snapshots only once no decodes are pending, as LeftCanvas.snapshot does
+    public static final class Snapshot implements SceneView {
+        private final int size;
+        private final double[] x;
+        private final double[] y;
+        private final double[] rotation;
+        private final double[] scale;
+        private final byte[] flags;
+        private final BufferedImage[] images;
+        private final double[] minX;
+        private final double[] minY;
+        private final double[] maxX;
+        private final double[] maxY;
+
+        private Snapshot(SceneStore<?> store) {
+            store.updateBounds();
+            size = store.size;
+            x = Arrays.copyOf(store.x, size);
+            y = Arrays.copyOf(store.y, size);
+            rotation = Arrays.copyOf(store.rotation, size);
+            scale = Arrays.copyOf(store.scale, size);
+            flags = Arrays.copyOf(store.flags, size);
+            images = new BufferedImage[size];
+            for (int i = 0; i < size; i++) {
+                images[i] = store.imageTable[store.imageId[i]];
+            }
+            minX = Arrays.copyOf(store.minX, size);
+            minY = Arrays.copyOf(store.minY, size);
+            maxX = Arrays.copyOf(store.maxX, size);
+            maxY = Arrays.copyOf(store.maxY, size);
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public BufferedImage getImage(int i) {
+            return images[i];
+        }
+
+        public double getX(int i) {
+            return x[i];
+        }
+
+        public double getY(int i) {
+            return y[i];
+        }
+
+        public double getScale(int i) {
+            return scale[i];
+        }
+
+        // Method to test a slot's transformed bounds against a rectangle, as SceneStore.intersects does
+        public boolean intersects(int i, double rMinX, double rMinY, double rMaxX, double rMaxY) {
+            return maxX[i] > rMinX && minX[i] < rMaxX && maxY[i] > rMinY && minY[i] < rMaxY;
+        }
+
+        // Method to set out to the image-to-canvas transform of a slot, as SceneStore.getTransform does
+        public void getTransform(int i, AffineTransform out) {
+            setTransform(out, x[i], y[i], rotation[i], scale[i], flags[i], images[i]);
+        }
+    }
+
+    private static final byte FLIP_H = 1;
+    private static final byte FLIP_V = 2;
+    private static final int TYPE_SHIFT = 2;
+    private static final int TYPE_MASK = 3 << TYPE_SHIFT;
+    private static final String[] TYPE_NAMES = {"Animal", "Flower", "Custom"};
+    private static final int INITIAL_CAPACITY = 64;
+
+    // Per-slot state, indexed by stacking order
+    private int size = 0;
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] rotation = new double[INITIAL_CAPACITY];
+    private double[] scale = new double[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];             // Flip bits and the item type
+    private int[] imageId = new int[INITIAL_CAPACITY];
+    private long[] version = new long[INITIAL_CAPACITY];
+    private Item[] items = new Item[INITIAL_CAPACITY];
+    private Object[] attachments = new Object[INITIAL_CAPACITY];   // Owner data kept alongside each slot
+
+    // Canvas-space bounds of each transformed image, refreshed when boundsVersion falls behind version
+    private double[] minX = new double[INITIAL_CAPACITY];
+    private double[] minY = new double[INITIAL_CAPACITY];
+    private double[] maxX = new double[INITIAL_CAPACITY];
+    private double[] maxY = new double[INITIAL_CAPACITY];
+    private long[] boundsVersion = new long[INITIAL_CAPACITY];
+
+    // Images shared by slots, referenced by id so a slot holds an int rather than a pointer
+    private BufferedImage[] imageTable = new BufferedImage[16];
+    private int[] imageRefs = new int[16];
+    private final Map<BufferedImage, Integer> imageIds = new IdentityHashMap<>();
+    private int[] freeImageIds = new int[16];
+    private int freeImageCount = 0;
+    private int imageTableSize = 0;
+
+    // Method to add a slot on top copying the image, type and transform of any CreationItem, returning its view
+    public Item add(CreationItem template, double itemX, double itemY, T attachment) {
+        ensureCapacity(size + 1);
+        int i = size++;
+        items[i] = new Item(this, i);
+        writeSlot(i, template, itemX, itemY, attachment);
+        return items[i];
+    }
+
+    // Method to put a removed item's view back at a stacking position, shifting the slots from there up; state is copied from template
+    public void insert(int index, Item item, CreationItem template, double itemX, double itemY, T attachment) {
+        if (item.index >= 0 || item.store != this || index < 0 || index > size) {
+            throw new IllegalArgumentException("Item cannot be inserted at " + index);
+        }
+        ensureCapacity(size + 1);
+        int tail = size - index;
+        System.arraycopy(x, index, x, index + 1, tail);
+        System.arraycopy(y, index, y, index + 1, tail);
+        System.arraycopy(rotation, index, rotation, index + 1, tail);
+        System.arraycopy(scale, index, scale, index + 1, tail);
+        System.arraycopy(flags, index, flags, index + 1, tail);
+        System.arraycopy(imageId, index, imageId, index + 1, tail);
+        System.arraycopy(version, index, version, index + 1, tail);
+        System.arraycopy(items, index, items, index + 1, tail);
+        System.arraycopy(attachments, index, attachments, index + 1, tail);
+        System.arraycopy(minX, index, minX, index + 1, tail);
+        System.arraycopy(minY, index, minY, index + 1, tail);
+        System.arraycopy(maxX, index, maxX, index + 1, tail);
+        System.arraycopy(maxY, index, maxY, index + 1, tail);
+        System.arraycopy(boundsVersion, index, boundsVersion, index + 1, tail);
+        size++;
+        for (int j = index + 1; j < size; j++) {
+            items[j].index = j;
+        }
+        item.index = index;
+        items[index] = item;
+        writeSlot(index, template, itemX, itemY, attachment);
+    }
+
+    // Method to remove a slot, shifting the slots above it down so stacking order is kept
+    public void remove(Item item) {
+        int i = item.index;
+        if (i < 0 || item.store != this) return;
+        releaseImage(imageId[i]);
+        int tail = size - i - 1;
+        System.arraycopy(x, i + 1, x, i, tail);
+        System.arraycopy(y, i + 1, y, i, tail);
+        System.arraycopy(rotation, i + 1, rotation, i, tail);
+        System.arraycopy(scale, i + 1, scale, i, tail);
+        System.arraycopy(flags, i + 1, flags, i, tail);
+        System.arraycopy(imageId, i + 1, imageId, i, tail);
+        System.arraycopy(version, i + 1, version, i, tail);
+        System.arraycopy(items, i + 1, items, i, tail);
+        System.arraycopy(attachments, i + 1, attachments, i, tail);
+        System.arraycopy(minX, i + 1, minX, i, tail);
+        System.arraycopy(minY, i + 1, minY, i, tail);
+        System.arraycopy(maxX, i + 1, maxX, i, tail);
+        System.arraycopy(maxY, i + 1, maxY, i, tail);
+        System.arraycopy(boundsVersion, i + 1, boundsVersion, i, tail);
+        size--;
+        items[size] = null;
+        attachments[size] = null;
+        for (int j = i; j < size; j++) {
+            items[j].index = j;
+        }
+        item.index = -1;
+    }
+
+    // Method to remove every slot
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            items[i].index = -1;
+        }
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(attachments, 0, size, null);
+        Arrays.fill(imageTable, 0, imageTableSize, null);
+        imageIds.clear();
+        imageTableSize = 0;
+        freeImageCount = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public BufferedImage getImage(int i) {
+        return imageTable[imageId[i]];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    public double getScale(int i) {
+        return scale[i];
+    }
+
+    // Method to get the view of a slot
+    public Item get(int index) {
+        return items[index];
+    }
+
+    // Method to get the owner data stored with a slot
+    @SuppressWarnings("unchecked")
+    public T getAttachment(int index) {
+        return (T) attachments[index];
+    }
+
+    // Method to replace the owner data stored with a slot
+    public void setAttachment(int index, T attachment) {
+        attachments[index] = attachment;
+    }
+
+    // Method to get the number of distinct images the slots refer to
+    public int getImageCount() {
+        return imageIds.size();
+    }
+
+    // Method to move a range of slots by the same offset in one pass
+    public void translate(int from, int to, double dx, double dy) {
+        for (int i = from; i < to; i++) {
+            x[i] += dx;
+            y[i] += dy;
+            version[i]++;
+        }
+    }
+
+    // Method to rotate a range of slots about their own centers in one pass
+    public void rotate(int from, int to, double radians) {
+        for (int i = from; i < to; i++) {
+            rotation[i] += radians;
+            version[i]++;
+        }
+    }
+
+    // Method to scale a range of slots in one pass
+    public void scale(int from, int to, double factor) {
+        for (int i = from; i < to; i++) {
+            scale[i] *= factor;
+            version[i]++;
+        }
+    }
+
+    // Method to bring the bounds of every changed slot up to date; must run before concurrent intersects calls
+    public void updateBounds() {
+        for (int i = 0; i < size; i++) {
+            if (boundsVersion[i] != version[i]) {
+                computeBounds(i);
+            }
+        }
+    }
+
+    // Method to store a slot's canvas-space bounds in out, refreshing them first if the slot changed
+    public void getBounds(int i, Rectangle2D out) {
+        if (boundsVersion[i] != version[i]) {
+            computeBounds(i);
+        }
+        out.setFrameFromDiagonal(minX[i], minY[i], maxX[i], maxY[i]);
+    }
+
+    // Method to test a slot's transformed bounds against a rectangle; bounds must be current, see updateBounds
+    public boolean intersects(int i, double rMinX, double rMinY, double rMaxX, double rMaxY) {
+        return maxX[i] > rMinX && minX[i] < rMaxX && maxY[i] > rMinY && minY[i] < rMaxY;
+    }
+
+    // Method to set out to the image-to-canvas transform of a slot, matching SpriteCache.getLocalTransform
+    public void getTransform(int i, AffineTransform out) {
+        setTransform(out, x[i], y[i], rotation[i], scale[i], flags[i], imageTable[imageId[i]]);
+    }
+
+    // Method to take a snapshot of every slot for rendering on another thread; costs a copy of the per-slot arrays, not of any image
+    public Snapshot snapshot() {
+        return new Snapshot(this);
+    }
+
+    // Method to set out to the transform placing an image at a position with a rotation, scale and flip flags
+    private static void setTransform(AffineTransform out, double x, double y, double rotation, double s, byte flags, BufferedImage image) {
+        out.setToTranslation(x, y);
+        out.rotate(rotation, image.getWidth() * s / 2, image.getHeight() * s / 2);
+        out.scale((flags & FLIP_H) != 0 ? -s : s, (flags & FLIP_V) != 0 ? -s : s);
+    }
+
+    // Method to fill a slot from a template's image, type and transform
+    private void writeSlot(int i, CreationItem template, double itemX, double itemY, T attachment) {
+        x[i] = itemX;
+        y[i] = itemY;
+        rotation[i] = template.getRotation();
+        scale[i] = template.getScale();
+        flags[i] = (byte) ((template.isFlippedH() ? FLIP_H : 0) | (template.isFlippedV() ? FLIP_V : 0)
+            | (typeCode(template.getType()) << TYPE_SHIFT));
+        imageId[i] = intern(template.getImage());
+        version[i] = 0;
+        boundsVersion[i] = -1;
+        attachments[i] = attachment;
+    }
+
+    // Method to compute a slot's bounds by rotating the corners of its scaled, flipped image about the scaled center
+    private void computeBounds(int i) {
+        BufferedImage image = imageTable[imageId[i]];
+        double s = scale[i];
+        double w = image.getWidth() * s;
+        double h = image.getHeight() * s;
+        double u0 = (flags[i] & FLIP_H) != 0 ? -w : 0;
+        double v0 = (flags[i] & FLIP_V) != 0 ? -h : 0;
+        double cx = w / 2;
+        double cy = h / 2;
+        double cos = Math.cos(rotation[i]);
+        double sin = Math.sin(rotation[i]);
+
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        double loY = Double.POSITIVE_INFINITY, hiY = Double.NEGATIVE_INFINITY;
+        for (int corner = 0; corner < 4; corner++) {
+            double u = (corner & 1) == 0 ? u0 : u0 + w;
+            double v = (corner & 2) == 0 ? v0 : v0 + h;
+            double px = cos * (u - cx) - sin * (v - cy) + cx;
+            double py = sin * (u - cx) + cos * (v - cy) + cy;
+            lo = Math.min(lo, px);
+            hi = Math.max(hi, px);
+            loY = Math.min(loY, py);
+            hiY = Math.max(hiY, py);
+        }
+        minX[i] = x[i] + lo;
+        maxX[i] = x[i] + hi;
+        minY[i] = y[i] + loY;
+        maxY[i] = y[i] + hiY;
+        boundsVersion[i] = version[i];
+    }
+
+    // Method to get the id of an image, adding it to the table on first use
+    private int intern(BufferedImage image) {
+        Integer id = imageIds.get(image);
+        if (id == null) {
+            if (freeImageCount > 0) {
+                id = freeImageIds[--freeImageCount];
+            } else {
+                if (imageTableSize == imageTable.length) {
+                    imageTable = Arrays.copyOf(imageTable, imageTableSize * 2);
+                    imageRefs = Arrays.copyOf(imageRefs, imageTableSize * 2);
+                }
+                id = imageTableSize++;
+            }
+            imageTable[id] = image;
+            imageRefs[id] = 0;
+            imageIds.put(image, id);
+        }
+        imageRefs[id]++;
+        return id;
+    }
+
+    // Method to drop a slot's hold on an image, freeing its id when no slot uses it
+    private void releaseImage(int id) {
+        if (--imageRefs[id] > 0) return;
+        imageIds.remove(imageTable[id]);
+        imageTable[id] = null;
+        if (freeImageCount == freeImageIds.length) {
+            freeImageIds = Arrays.copyOf(freeImageIds, freeImageCount * 2);
+        }
+        freeImageIds[freeImageCount++] = id;
+    }
+
+    // Method to grow every per-slot array together
+    private void ensureCapacity(int capacity) {
+        if (capacity <= x.length) return;
+        int n = Math.max(capacity, x.length * 2);
+        x = Arrays.copyOf(x, n);
+        y = Arrays.copyOf(y, n);
+        rotation = Arrays.copyOf(rotation, n);
+        scale = Arrays.copyOf(scale, n);
+        flags = Arrays.copyOf(flags, n);
+        imageId = Arrays.copyOf(imageId, n);
+        version = Arrays.copyOf(version, n);
+        items = Arrays.copyOf(items, n);
+        attachments = Arrays.copyOf(attachments, n);
+        minX = Arrays.copyOf(minX, n);
+        minY = Arrays.copyOf(minY, n);
+        maxX = Arrays.copyOf(maxX, n);
+        maxY = Arrays.copyOf(maxY, n);
+        boundsVersion = Arrays.copyOf(boundsVersion, n);
+    }
+
+    // Method to get the stored code for an item type, treating anything unknown as custom
+    private static int typeCode(String type) {
+        for (int i = 0; i < TYPE_NAMES.length; i++) {
+            if (TYPE_NAMES[i].equalsIgnoreCase(type)) return i;
+        }
+        return TYPE_NAMES.length - 1;
+    }
+}
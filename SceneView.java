@@ -0,0 +1,21 @@
+// What a render reads of a scene's items in stacking order: the SceneStore itself on the Event Dispatch Thread, or a snapshot of it on any thread.
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+
+public interface SceneView {
+    int size();
+
+    BufferedImage getImage(int i);
+
+    double getX(int i);
+
+    double getY(int i);
+
+    double getScale(int i);
+
+    // Method to test an item's transformed bounds against a rectangle
+    boolean intersects(int i, double rMinX, double rMinY, double rMaxX, double rMaxY);
+
+    // Method to set out to the image-to-canvas transform of an item
+    void getTransform(int i, AffineTransform out);
+}
@@ -0,0 +1,209 @@
+// Uniform grid spatial index returning the items whose bounds cover a point, in z order.
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+public class SpatialGrid<T> {
+    // Range of cells an item currently occupies
+    private static class CellRange {
+        int minX, minY, maxX, maxY;
+    }
+
+    private final int cellSize;
+    private final ToLongFunction<T> zOrder;                               // Key that keeps each cell sorted bottom to top
+    private final Map<T, CellRange> ranges = new IdentityHashMap<>();
+
+    // Open-addressing map from packed cell coordinates to cell contents, so lookups never box a key
+    private long[] cellKeys = new long[64];
+    private Object[] cellLists = new Object[64];
+    private int cellCount = 0;
+
+    // Constructor to create a grid with the given cell size and z-order key
+    public SpatialGrid(int cellSize, ToLongFunction<T> zOrder) {
+        this.cellSize = cellSize;
+        this.zOrder = zOrder;
+    }
+
+    // Method to insert an item or move it to cover new bounds
+    public void update(T item, Rectangle2D bounds) {
+        int minX = cellOf(bounds.getMinX());
+        int minY = cellOf(bounds.getMinY());
+        int maxX = cellOf(bounds.getMaxX());
+        int maxY = cellOf(bounds.getMaxY());
+        CellRange range = ranges.get(item);
+        if (range != null) {
+            if (range.minX == minX && range.minY == minY && range.maxX == maxX && range.maxY == maxY) {
+                return;
+            }
+            removeFromCells(item, range);
+        } else {
+            range = new CellRange();
+            ranges.put(item, range);
+        }
+        range.minX = minX;
+        range.minY = minY;
+        range.maxX = maxX;
+        range.maxY = maxY;
+
+        long z = zOrder.applyAsLong(item);
+        for (int cy = minY; cy <= maxY; cy++) {
+            for (int cx = minX; cx <= maxX; cx++) {
+                List<T> cell = getOrCreateCell(key(cx, cy));
+                cell.add(insertionIndex(cell, z), item);
+            }
+        }
+    }
+
+    // Method to remove an item from the grid
+    public void remove(T item) {
+        CellRange old = ranges.remove(item);
+        if (old != null) {
+            removeFromCells(item, old);
+        }
+    }
+
+    // Method to remove every item from the grid
+    public void clear() {
+        ranges.clear();
+        Arrays.fill(cellLists, null);
+        cellCount = 0;
+    }
+
+    // Method to get the candidates whose bounds may contain a point, ordered bottom to top; do not modify the result
+    public List<T> query(double x, double y) {
+        int slot = findSlot(key(cellOf(x), cellOf(y)));
+        return slot >= 0 ? cellAt(slot) : Collections.emptyList();
+    }
+
+    // Method to get the number of indexed items
+    public int size() {
+        return ranges.size();
+    }
+
+    // Method to remove an item from each cell of a range, dropping cells that become empty
+    private void removeFromCells(T item, CellRange range) {
+        for (int cy = range.minY; cy <= range.maxY; cy++) {
+            for (int cx = range.minX; cx <= range.maxX; cx++) {
+                int slot = findSlot(key(cx, cy));
+                if (slot < 0) continue;
+                List<T> cell = cellAt(slot);
+                for (int i = 0; i < cell.size(); i++) {
+                    if (cell.get(i) == item) {
+                        cell.remove(i);
+                        break;
+                    }
+                }
+                if (cell.isEmpty()) {
+                    removeSlot(slot);
+                }
+            }
+        }
+    }
+
+    // Method to find where an item with the given z key belongs in a sorted cell
+    private int insertionIndex(List<T> cell, long z) {
+        int lo = 0;
+        int hi = cell.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (zOrder.applyAsLong(cell.get(mid)) <= z) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<T> cellAt(int slot) {
+        return (List<T>) cellLists[slot];
+    }
+
+    // Method to find the slot holding a cell key, or -1 if the cell is empty
+    private int findSlot(long key) {
+        int mask = cellKeys.length - 1;
+        for (int slot = hash(key) & mask; cellLists[slot] != null; slot = (slot + 1) & mask) {
+            if (cellKeys[slot] == key) return slot;
+        }
+        return -1;
+    }
+
+    // Method to get the list for a cell key, creating the cell if it does not exist
+    private List<T> getOrCreateCell(long key) {
+        int slot = findSlot(key);
+        if (slot >= 0) return cellAt(slot);
+        if ((cellCount + 1) * 2 > cellKeys.length) {
+            grow();
+        }
+        int mask = cellKeys.length - 1;
+        slot = hash(key) & mask;
+        while (cellLists[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        List<T> cell = new ArrayList<>(4);
+        cellKeys[slot] = key;
+        cellLists[slot] = cell;
+        cellCount++;
+        return cell;
+    }
+
+    // Method to empty a slot, shifting later entries of the same probe run back so lookups still find them
+    private void removeSlot(int slot) {
+        int mask = cellKeys.length - 1;
+        cellLists[slot] = null;
+        cellCount--;
+        int next = (slot + 1) & mask;
+        while (cellLists[next] != null) {
+            int home = hash(cellKeys[next]) & mask;
+            // Move the entry back if its home slot is not between the hole and its current slot
+            boolean movable = slot <= next ? (home <= slot || home > next) : (home <= slot && home > next);
+            if (movable) {
+                cellKeys[slot] = cellKeys[next];
+                cellLists[slot] = cellLists[next];
+                cellLists[next] = null;
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+    }
+
+    // Method to double the cell table and rehash every cell
+    private void grow() {
+        long[] oldKeys = cellKeys;
+        Object[] oldLists = cellLists;
+        cellKeys = new long[oldKeys.length * 2];
+        cellLists = new Object[oldLists.length * 2];
+        int mask = cellKeys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldLists[i] == null) continue;
+            int slot = hash(oldKeys[i]) & mask;
+            while (cellLists[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            cellKeys[slot] = oldKeys[i];
+            cellLists[slot] = oldLists[i];
+        }
+    }
+
+    // Method to get the cell index for a coordinate
+    private int cellOf(double v) {
+        return (int) Math.floor(v / cellSize);
+    }
+
+    // Method to pack a cell coordinate pair into a map key
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    // Method to spread a cell key across the table
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,213 @@
+// Store of byte blobs kept in memory up to a cap, with the oldest spilled to a temporary file beyond it.
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+public class SpillStore {
+    // Handle for a stored blob; its bytes are either in memory or at an offset in the spill file
+    public static final class Blob {
+        private byte[] data;
+        private long offset = -1;
+        private final int length;
+        private boolean released = false;
+
+        private Blob(byte[] data) {
+            this.data = data;
+            this.length = data.length;
+        }
+
+        public int getLength() {
+            return length;
+        }
+    }
+
+    private static final long COMPACT_THRESHOLD_BYTES = 4L * 1024 * 1024;  // Dead space tolerated in the spill file before it is rewritten
+
+    private final LinkedHashSet<Blob> inMemory = new LinkedHashSet<>();    // Oldest first, so those are spilled first
+    private final List<Blob> onDisk = new ArrayList<>();
+    private long memoryCapBytes;
+    private long memoryBytes = 0;
+    private long diskBytes = 0;             // Bytes of live blobs in the spill file
+    private File spillFile;
+    private RandomAccessFile spill;
+
+    // Constructor to create a store that keeps up to memoryCapBytes of blobs in memory
+    public SpillStore(long memoryCapBytes) {
+        this.memoryCapBytes = memoryCapBytes;
+    }
+
+    // Method to add a blob, spilling older ones if it takes the store over its memory cap
+    public synchronized Blob put(byte[] data) {
+        Blob blob = new Blob(data);
+        inMemory.add(blob);
+        memoryBytes += blob.length;
+        spillToCap();
+        return blob;
+    }
+
+    // Method to read a blob's bytes back, from memory or from the spill file
+    public synchronized byte[] get(Blob blob) {
+        if (blob.released) {
+            throw new IllegalStateException("Blob has been released");
+        }
+        if (blob.data != null) return blob.data;
+        byte[] data = new byte[blob.length];
+        try {
+            spill.seek(blob.offset);
+            spill.readFully(data);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return data;
+    }
+
+    // Method to drop a blob that is no longer needed, reclaiming its memory or, eventually, its space on disk
+    public synchronized void release(Blob blob) {
+        if (blob.released) return;
+        blob.released = true;
+        if (blob.data != null) {
+            inMemory.remove(blob);
+            memoryBytes -= blob.length;
+            blob.data = null;
+        } else {
+            diskBytes -= blob.length;
+            compactIfSparse();
+        }
+    }
+
+    // Method to change the memory cap, spilling blobs at once if the new cap is lower
+    public synchronized void setMemoryCapBytes(long memoryCapBytes) {
+        this.memoryCapBytes = memoryCapBytes;
+        spillToCap();
+    }
+
+    public synchronized long getMemoryCapBytes() {
+        return memoryCapBytes;
+    }
+
+    // Method to get the bytes of blobs held in memory
+    public synchronized long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    // Method to get the bytes of live blobs in the spill file
+    public synchronized long getDiskBytes() {
+        return diskBytes;
+    }
+
+    // Method to release every blob and delete the spill file
+    public synchronized void clear() {
+        for (Blob blob : inMemory) {
+            blob.released = true;
+            blob.data = null;
+        }
+        for (Blob blob : onDisk) {
+            blob.released = true;
+        }
+        inMemory.clear();
+        onDisk.clear();
+        memoryBytes = 0;
+        diskBytes = 0;
+        closeSpill();
+    }
+
+    // Method to move the oldest blobs to the spill file until memory is within the cap
+    private void spillToCap() {
+        Iterator<Blob> it = inMemory.iterator();
+        while (memoryBytes > memoryCapBytes && it.hasNext()) {
+            Blob blob = it.next();
+            try {
+                openSpill();
+                blob.offset = spill.length();
+                spill.seek(blob.offset);
+                spill.write(blob.data);
+            } catch (IOException ex) {
+                return;     // No room on disk; keep the rest in memory rather than lose history
+            }
+            it.remove();
+            memoryBytes -= blob.length;
+            diskBytes += blob.length;
+            blob.data = null;
+            onDisk.add(blob);
+        }
+    }
+
+    // Method to rewrite the spill file without released blobs once most of it is dead space
+    private void compactIfSparse() {
+        onDisk.removeIf(blob -> blob.released);
+        if (onDisk.isEmpty()) {
+            closeSpill();
+            return;
+        }
+        long fileBytes;
+        try {
+            fileBytes = spill.length();
+        } catch (IOException ex) {
+            return;
+        }
+        long dead = fileBytes - diskBytes;
+        if (dead < COMPACT_THRESHOLD_BYTES || dead < diskBytes) return;
+
+        File oldFile = spillFile;
+        RandomAccessFile old = spill;
+        spill = null;
+        long[] offsets = new long[onDisk.size()];
+        try {
+            openSpill();
+            for (int i = 0; i < offsets.length; i++) {
+                Blob blob = onDisk.get(i);
+                byte[] data = new byte[blob.length];
+                old.seek(blob.offset);
+                old.readFully(data);
+                offsets[i] = spill.length();
+                spill.seek(offsets[i]);
+                spill.write(data);
+            }
+        } catch (IOException ex) {
+            // Keep using the old file; it is only larger than it needs to be
+            if (spill != null) {
+                closeQuietly(spill);
+                spillFile.delete();
+            }
+            spill = old;
+            spillFile = oldFile;
+            return;
+        }
+        for (int i = 0; i < offsets.length; i++) {
+            onDisk.get(i).offset = offsets[i];
+        }
+        closeQuietly(old);
+        oldFile.delete();
+    }
+
+    // Method to create the spill file on first use
+    private void openSpill() throws IOException {
+        if (spill != null) return;
+        spillFile = File.createTempFile("drawingstudio-undo", ".bin");
+        spillFile.deleteOnExit();
+        spill = new RandomAccessFile(spillFile, "rw");
+    }
+
+    // Method to close and delete the spill file
+    private void closeSpill() {
+        if (spill == null) return;
+        closeQuietly(spill);
+        spillFile.delete();
+        spill = null;
+        spillFile = null;
+    }
+
+    // Method to close a file, ignoring errors since its contents are no longer needed
+    private static void closeQuietly(RandomAccessFile file) {
+        try {
+            file.close();
+        } catch (IOException ignored) {
+            // Nothing useful to report for a file about to be deleted
+        }
+    }
+}
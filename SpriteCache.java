@@ -0,0 +1,208 @@
+// Cache of pre-rendered sprites holding each CreationItem's image already rotated, scaled and flipped.
+import java.awt.AlphaComposite;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+public class SpriteCache {
+    // A transformed raster plus the offset of its top-left corner from the item's position
+    public static class Sprite {
+        final BufferedImage raster;
+        final int offsetX;
+        final int offsetY;
+        private final BufferedImage source;
+        private final double rotation;
+        private final double scale;
+        private final boolean flipH;
+        private final boolean flipV;
+
+        // Constructor to record the item state the raster was rendered for
+        Sprite(BufferedImage raster, int offsetX, int offsetY, CreationItem item) {
+            this.raster = raster;
+            this.offsetX = offsetX;
+            this.offsetY = offsetY;
+            this.source = item.getImage();
+            this.rotation = item.getRotation();
+            this.scale = item.getScale();
+            this.flipH = item.isFlippedH();
+            this.flipV = item.isFlippedV();
+        }
+
+        // Method to check if this sprite still reflects the item's current image and transform state
+        boolean matches(CreationItem item) {
+            return source == item.getImage()
+                && rotation == item.getRotation()
+                && scale == item.getScale()
+                && flipH == item.isFlippedH()
+                && flipV == item.isFlippedV();
+        }
+
+        // Method to get the approximate memory held by the raster
+        long getBytes() {
+            return (long) raster.getWidth() * raster.getHeight() * 4;
+        }
+    }
+
+    private static final long DEFAULT_BUDGET_BYTES = 64L * 1024 * 1024;    // Default memory budget shared by all items
+    private static final SpriteCache INSTANCE = new SpriteCache(DEFAULT_BUDGET_BYTES);
+
+    // Access-ordered map so iteration starts at the least recently used sprite
+    private final LinkedHashMap<CreationItem, Sprite> sprites = new LinkedHashMap<>(16, 0.75f, true);
+    private long budgetBytes;
+    private long usedBytes = 0;
+    // Adders rather than fields guarded by the cache lock, so statistics can be read without contending with lookups
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    // Constructor to create a cache with the given memory budget in bytes
+    public SpriteCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    // Method to get the cache shared by all canvases
+    public static SpriteCache getInstance() {
+        return INSTANCE;
+    }
+
+    // Method to get the sprite for an item, rendering it on a miss; returns null if it would not fit the budget
+    public Sprite getSprite(CreationItem item) {
+        long maxBytes;
+        synchronized (this) {
+            Sprite sprite = sprites.get(item);
+            if (sprite != null && sprite.matches(item)) {
+                hits.increment();
+                return sprite;
+            }
+            misses.increment();
+            if (sprite != null) {
+                remove(item);
+            }
+            maxBytes = budgetBytes / 4;
+        }
+
+        // Sprites larger than a quarter of the budget would thrash the cache; draw those directly
+        Rectangle bounds = getSpriteBounds(item);
+        if (bounds.isEmpty() || (long) bounds.width * bounds.height * 4 > maxBytes) {
+            return null;
+        }
+
+        // Render outside the lock so canvases drawing on other threads are not serialized behind it
+        Sprite sprite = render(item, bounds);
+        synchronized (this) {
+            Sprite previous = sprites.put(item, sprite);
+            if (previous != null) {
+                usedBytes -= previous.getBytes();
+            }
+            usedBytes += sprite.getBytes();
+            evictToBudget();
+        }
+        return sprite;
+    }
+
+    // Method to drop the sprite for an item that has left the canvas
+    public synchronized void invalidate(CreationItem item) {
+        remove(item);
+    }
+
+    // Method to drop all cached sprites
+    public synchronized void clear() {
+        sprites.clear();
+        usedBytes = 0;
+    }
+
+    // Method to change the memory budget, evicting sprites if needed
+    public synchronized void setBudgetBytes(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+        evictToBudget();
+    }
+
+    public synchronized long getBudgetBytes() {
+        return budgetBytes;
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    // Method to get the fraction of lookups served from the cache
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    // Method to get the transform of an item relative to its position; it is the transform LeftCanvas.getGeometry takes from
+    // SceneStore.getTransform, without the translation to the item's position
+    static AffineTransform getLocalTransform(CreationItem item) {
+        BufferedImage image = item.getImage();
+        double scale = item.getScale();
+        AffineTransform at = new AffineTransform();
+        at.rotate(item.getRotation(), image.getWidth() * scale / 2, image.getHeight() * scale / 2);
+        at.scale(item.isFlippedH() ? -scale : scale, item.isFlippedV() ? -scale : scale);
+        return at;
+    }
+
+    // Method to get the pixel bounds of an item's transformed image relative to its position
+    private static Rectangle getSpriteBounds(CreationItem item) {
+        BufferedImage image = item.getImage();
+        Rectangle2D bounds = getLocalTransform(item).createTransformedShape(
+            new Rectangle(0, 0, image.getWidth(), image.getHeight())).getBounds2D();
+        int offsetX = (int) Math.floor(bounds.getMinX());
+        int offsetY = (int) Math.floor(bounds.getMinY());
+        return new Rectangle(offsetX, offsetY,
+            (int) Math.ceil(bounds.getMaxX()) - offsetX,
+            (int) Math.ceil(bounds.getMaxY()) - offsetY);
+    }
+
+    // Method to render an item's image through its local transform into a raster covering the given bounds
+    private static Sprite render(CreationItem item, Rectangle bounds) {
+        BufferedImage image = item.getImage();
+        AffineTransform local = getLocalTransform(item);
+        int offsetX = bounds.x;
+        int offsetY = bounds.y;
+
+        BufferedImage raster = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = raster.createGraphics();
+        g2.setComposite(AlphaComposite.Src);
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.translate(-offsetX, -offsetY);
+        // Sample from the mipmap level nearest the item's scale so cost follows on-screen size
+        BufferedImage level = MipmapChain.getLevelFor(image, item.getScale());
+        local.concatenate(MipmapChain.getLevelTransform(image, level));
+        g2.drawImage(level, local, null);
+        g2.dispose();
+        return new Sprite(raster, offsetX, offsetY, item);
+    }
+
+    // Method to remove a single sprite and release its bytes
+    private void remove(CreationItem item) {
+        Sprite removed = sprites.remove(item);
+        if (removed != null) {
+            usedBytes -= removed.getBytes();
+        }
+    }
+
+    // Method to evict least recently used sprites until the cache fits its budget
+    private void evictToBudget() {
+        Iterator<Map.Entry<CreationItem, Sprite>> it = sprites.entrySet().iterator();
+        while (usedBytes > budgetBytes && it.hasNext()) {
+            usedBytes -= it.next().getValue().getBytes();
+            it.remove();
+        }
+    }
+}
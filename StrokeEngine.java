@@ -0,0 +1,162 @@
+// Draws a freehand stroke into a tiled drawing in batches, through one Graphics2D per tile configured once for the whole stroke.
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class StrokeEngine {
+    private final TiledDrawing drawing;
+    private final Color color;
+    private final BasicStroke pen;
+    private final boolean eraser;
+    private final Map<Integer, Graphics2D> graphics = new LinkedHashMap<>();  // One per tile the stroke has drawn on; null once released
+    private int snapshotCount;              // Snapshots of the drawing taken before the Graphics2Ds were made
+    private final TileDelta delta;          // Saves the tiles a batch is about to cover; may be null
+    private final int reach;                // Pixels the pen reaches past a point, including antialiasing
+    private final Path2D.Float pending = new Path2D.Float();   // Segments added since the last flush
+    private final Rectangle dirty = new Rectangle();
+    private float[] points = new float[64];  // Every point of the stroke as x, y pairs, for the stroke log
+    private int pointCount = 0;
+    private int flushedPoints = 1;          // Points already drawn by earlier flushes; the start point draws nothing alone
+    private boolean hasPending = false;
+    private int lastX;
+    private int lastY;
+
+    // Constructor to start a stroke at a point of the drawing, with the pen's colour and size or as an eraser
+    public StrokeEngine(TiledDrawing drawing, int x, int y, Color color, int size, boolean eraser, TileDelta delta) {
+        this.drawing = drawing;
+        this.color = color;
+        this.pen = new BasicStroke(size, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+        this.eraser = eraser;
+        this.delta = delta;
+        this.reach = size / 2 + 2;
+        this.snapshotCount = drawing.getSnapshotCount();
+        this.lastX = x;
+        this.lastY = y;
+        addPoint(x, y);
+    }
+
+    // Method to extend the stroke to a point; nothing is drawn until the next flush
+    public void lineTo(int x, int y) {
+        if (!hasPending) {
+            pending.moveTo(lastX, lastY);
+            dirty.setBounds(lastX - reach, lastY - reach, 2 * reach + 1, 2 * reach + 1);
+            hasPending = true;
+        }
+        pending.lineTo(x, y);
+        // Grows the bounds by the pen's square around the point, as corners, so no Rectangle is made per sample
+        dirty.add(x - reach, y - reach);
+        dirty.add(x + reach + 1, y + reach + 1);
+        lastX = x;
+        lastY = y;
+        addPoint(x, y);
+    }
+
+    // Method to draw the segments added since the last flush as one path; returns the image area drawn over, or null if there was nothing to draw
+    public Rectangle flush() {
+        if (!hasPending) return null;
+        StudioEvents.StrokeFlush event = StudioEvents.STROKE_FLUSH.isEnabled() ? new StudioEvents.StrokeFlush() : null;
+        if (event != null) event.begin();
+        int tiles = 0;
+        if (delta != null) {
+            delta.capture(dirty.x, dirty.y, dirty.width, dirty.height);
+        }
+        if (drawing.getSnapshotCount() != snapshotCount) {
+            // A snapshot now shares the tiles drawn on so far; new Graphics2Ds make the drawing copy them before drawing again
+            for (Map.Entry<Integer, Graphics2D> entry : graphics.entrySet()) {
+                if (entry.getValue() != null) entry.getValue().dispose();
+                entry.setValue(null);
+            }
+            snapshotCount = drawing.getSnapshotCount();
+        }
+        int[] range = drawing.getTileRange(dirty.x, dirty.y, dirty.width, dirty.height);
+        if (range != null) {
+            for (int row = range[1]; row <= range[3]; row++) {
+                for (int column = range[0]; column <= range[2]; column++) {
+                    Graphics2D g2d = getGraphics(drawing.getTile(column, row));
+                    if (g2d != null) {
+                        g2d.draw(pending);
+                        tiles++;
+                    }
+                }
+            }
+        }
+        pending.reset();
+        hasPending = false;
+        if (event != null && event.shouldCommit()) {
+            event.points = pointCount - flushedPoints;
+            event.tiles = tiles;
+            event.width = dirty.width;
+            event.height = dirty.height;
+            event.eraser = eraser;
+            event.commit();
+        }
+        flushedPoints = pointCount;
+        return new Rectangle(dirty);
+    }
+
+    // Method to draw whatever is still pending, release the Graphics2Ds and free tiles left empty; returns the area drawn over, or null
+    public Rectangle finish() {
+        Rectangle drawn = flush();
+        for (Map.Entry<Integer, Graphics2D> entry : graphics.entrySet()) {
+            if (entry.getValue() != null) entry.getValue().dispose();
+            // Covers tiles the eraser wiped and tiles the pen's bounds reached but it never drew on
+            drawing.releaseIfEmpty(entry.getKey());
+        }
+        graphics.clear();
+        return drawn;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public float getWidth() {
+        return pen.getLineWidth();
+    }
+
+    public boolean isEraser() {
+        return eraser;
+    }
+
+    // Method to get every point of the stroke so far as x, y pairs
+    public float[] getPoints() {
+        return Arrays.copyOf(points, pointCount * 2);
+    }
+
+    // Method to remember a point of the stroke, growing the array as needed
+    private void addPoint(int x, int y) {
+        if (pointCount * 2 == points.length) {
+            points = Arrays.copyOf(points, points.length * 2);
+        }
+        points[pointCount * 2] = x;
+        points[pointCount * 2 + 1] = y;
+        pointCount++;
+    }
+
+    // Method to get the stroke's Graphics2D for a tile, set up on first use; null for an empty tile under the eraser, which has nothing to erase
+    private Graphics2D getGraphics(int tile) {
+        Graphics2D g2d = graphics.get(tile);
+        if (g2d != null) return g2d;
+        if (eraser && drawing.getTileImage(tile) == null) return null;
+        g2d = drawing.getOrCreateTileImage(tile).createGraphics();
+        Rectangle r = drawing.getTileBounds(tile);
+        g2d.translate(-r.x, -r.y);
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        if (eraser) {
+            g2d.setComposite(AlphaComposite.Clear);
+        } else {
+            g2d.setColor(color);
+            g2d.setComposite(AlphaComposite.SrcOver);
+        }
+        g2d.setStroke(pen);
+        graphics.put(tile, g2d);
+        return g2d;
+    }
+}
@@ -0,0 +1,161 @@
+// Vector record of the pen and eraser strokes on a drawing, compact enough to keep them all and replayable at any resolution.
+import java.awt.AlphaComposite;
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.Path2D;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StrokeLog {
+    // One stroke: its points as x, y pairs in drawing coordinates, and the pen it was drawn with
+    public static final class Stroke {
+        private final float[] points;
+        private final Color color;          // Null for the eraser
+        private final float width;
+
+        public Stroke(float[] points, Color color, float width) {
+            this.points = points;
+            this.color = color;
+            this.width = width;
+        }
+
+        public int getPointCount() {
+            return points.length / 2;
+        }
+
+        public boolean isEraser() {
+            return color == null;
+        }
+
+        // Method to draw the stroke; g2d's transform maps drawing coordinates to the target, and scales the pen with it
+        void draw(Graphics2D g2d) {
+            Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO, points.length / 2);
+            path.moveTo(points[0], points[1]);
+            for (int i = 2; i < points.length; i += 2) {
+                path.lineTo(points[i], points[i + 1]);
+            }
+            if (color == null) {
+                g2d.setComposite(AlphaComposite.Clear);
+            } else {
+                g2d.setColor(color);
+                g2d.setComposite(AlphaComposite.SrcOver);
+            }
+            g2d.setStroke(new BasicStroke(width, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND));
+            g2d.draw(path);
+        }
+    }
+
+    public static final double TOLERANCE = 0.5;     // Furthest a simplified stroke may stray from the input, in drawing pixels
+
+    private final List<Stroke> strokes = new ArrayList<>();
+
+    // Method to record a stroke from its raw points, simplified to within TOLERANCE; returns the stored stroke
+    public Stroke add(float[] points, Color color, float width) {
+        Stroke stroke = new Stroke(simplify(points, TOLERANCE), color, width);
+        strokes.add(stroke);
+        return stroke;
+    }
+
+    // Method to record a stroke again, as when an undone stroke is redone
+    public void add(Stroke stroke) {
+        strokes.add(stroke);
+    }
+
+    // Method to drop a stroke, as when it is undone; undo always removes the newest stroke, so the search starts at the end
+    public void remove(Stroke stroke) {
+        int index = strokes.lastIndexOf(stroke);
+        if (index >= 0) strokes.remove(index);
+    }
+
+    // Method to get a copy of the strokes, oldest first
+    public List<Stroke> getStrokes() {
+        return new ArrayList<>(strokes);
+    }
+
+    // Method to replace every stroke, as when a clear is undone
+    public void setStrokes(List<Stroke> strokes) {
+        this.strokes.clear();
+        this.strokes.addAll(strokes);
+    }
+
+    public void clear() {
+        strokes.clear();
+    }
+
+    public int size() {
+        return strokes.size();
+    }
+
+    // Method to get the number of points kept across all strokes
+    public int getPointCount() {
+        int count = 0;
+        for (Stroke stroke : strokes) {
+            count += stroke.getPointCount();
+        }
+        return count;
+    }
+
+    // Method to replay every stroke onto a transparent layer; g2d's transform sets the resolution
+    public void render(Graphics2D g2d) {
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        for (Stroke stroke : strokes) {
+            stroke.draw(g2d);
+        }
+    }
+
+    // Method to drop points that lie within a tolerance of the line through their neighbours (Ramer-Douglas-Peucker)
+    static float[] simplify(float[] points, double tolerance) {
+        int count = points.length / 2;
+        if (count <= 2) return points.clone();
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        // Iterative, so a long stroke cannot overflow the stack
+        ArrayDeque<int[]> ranges = new ArrayDeque<>();
+        ranges.push(new int[] {0, count - 1});
+        double toleranceSquared = tolerance * tolerance;
+        while (!ranges.isEmpty()) {
+            int[] range = ranges.pop();
+            int first = range[0];
+            int last = range[1];
+            double furthest = -1;
+            int index = -1;
+            for (int i = first + 1; i < last; i++) {
+                double d = distanceSquared(points, i, first, last);
+                if (d > furthest) {
+                    furthest = d;
+                    index = i;
+                }
+            }
+            if (index >= 0 && furthest > toleranceSquared) {
+                keep[index] = true;
+                ranges.push(new int[] {first, index});
+                ranges.push(new int[] {index, last});
+            }
+        }
+        float[] kept = new float[count * 2];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                kept[n++] = points[2 * i];
+                kept[n++] = points[2 * i + 1];
+            }
+        }
+        return Arrays.copyOf(kept, n);
+    }
+
+    // Method to get the squared distance from a point to the segment between two others
+    private static double distanceSquared(float[] points, int i, int a, int b) {
+        double px = points[2 * i], py = points[2 * i + 1];
+        double ax = points[2 * a], ay = points[2 * a + 1];
+        double dx = points[2 * b] - ax, dy = points[2 * b + 1] - ay;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        double ex = ax + t * dx - px, ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+}
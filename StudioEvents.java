@@ -0,0 +1,165 @@
+// Java Flight Recorder event types for the work that decides how responsive Drawing Studio feels; they cost next to nothing unless a recording is running.
+import java.io.File;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+public final class StudioEvents {
+    private static final String CATEGORY = "Drawing Studio";
+
+    // Types of the events raised on every paint, pointer move and stroke flush; those paths check them before creating
+    // an event, so they allocate nothing unless a recording has the event enabled
+    static final EventType PAINT = EventType.getEventType(Paint.class);
+    static final EventType HIT_TEST = EventType.getEventType(HitTest.class);
+    static final EventType STROKE_FLUSH = EventType.getEventType(StrokeFlush.class);
+
+    private StudioEvents() {
+    }
+
+    // Method to fill in and commit a save event once its file has been written; does nothing unless a recording wants it
+    static void commitSave(Save event, String source, String format, int width, int height, File file) {
+        if (!event.shouldCommit()) return;
+        event.source = source;
+        event.format = format;
+        event.width = width;
+        event.height = height;
+        event.bytes = file.length();
+        event.commit();
+    }
+
+    // One paintComponent call of either canvas
+    @Name("drawingstudio.Paint")
+    @Label("Canvas Paint")
+    @Category({CATEGORY, "Rendering"})
+    @Description("A repaint of the LeftCanvas or RightCanvas, with the area repainted and the items it drew")
+    @StackTrace(false)
+    public static class Paint extends Event {
+        @Label("Canvas")
+        public String canvas;
+
+        @Label("Clip Width")
+        @Description("Width of the repainted area in component pixels")
+        public int clipWidth;
+
+        @Label("Clip Height")
+        public int clipHeight;
+
+        @Label("Items")
+        @Description("Items on the canvas, or live drawing tiles on the RightCanvas")
+        public int items;
+
+        @Label("Items Drawn")
+        @Description("Items that intersected the repainted area and were drawn; culled items are not counted")
+        public int itemsDrawn;
+    }
+
+    // One lookup of the handle under the pointer on the LeftCanvas
+    @Name("drawingstudio.HitTest")
+    @Label("Handle Hit Test")
+    @Category({CATEGORY, "Interaction"})
+    @Description("LeftCanvas lookup of the handle, if any, under the pointer on the selected item")
+    @StackTrace(false)
+    public static class HitTest extends Event {
+        @Label("Handle")
+        public String handle;
+    }
+
+    // A full-resolution capture of the LeftCanvas into one image
+    @Name("drawingstudio.Capture")
+    @Label("Canvas Capture")
+    @Category({CATEGORY, "Rendering"})
+    @Description("LeftCanvas.captureCanvas rendering every item into a new image")
+    public static class Capture extends Event {
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Items")
+        public int items;
+    }
+
+    // One batch of a RightCanvas stroke drawn into the tiles
+    @Name("drawingstudio.StrokeFlush")
+    @Label("Stroke Flush")
+    @Category({CATEGORY, "Drawing"})
+    @Description("Segments of a RightCanvas stroke drawn in one batch, once per frame")
+    @StackTrace(false)
+    public static class StrokeFlush extends Event {
+        @Label("Points")
+        @Description("Points added to the stroke since the previous batch")
+        public int points;
+
+        @Label("Tiles")
+        @Description("Drawing tiles the batch was drawn into")
+        public int tiles;
+
+        @Label("Width")
+        @Description("Width of the area the batch covers in drawing pixels")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Eraser")
+        public boolean eraser;
+    }
+
+    // One image decode on the decode service or in the batch renderer
+    @Name("drawingstudio.Decode")
+    @Label("Image Decode")
+    @Category({CATEGORY, "I/O"})
+    @Description("An image file decoded for a canvas, a scene or a batch render")
+    public static class Decode extends Event {
+        @Label("Format")
+        public String format;
+
+        @Label("Source Width")
+        public int sourceWidth;
+
+        @Label("Source Height")
+        public int sourceHeight;
+
+        @Label("Subsampling")
+        @Description("Source pixels skipped per decoded pixel along each axis")
+        public int subsampling;
+
+        @Label("Bytes Read")
+        @DataAmount
+        public long bytes;
+
+        @Label("Outcome")
+        @Description("completed, cancelled or failed")
+        public String outcome;
+    }
+
+    // One image written by a save or export path
+    @Name("drawingstudio.Save")
+    @Label("Image Save")
+    @Category({CATEGORY, "I/O"})
+    @Description("A canvas, composition or batch render encoded and written to a file")
+    public static class Save extends Event {
+        @Label("Source")
+        @Description("What was saved: LeftCanvas, RightCanvas, Composer or BatchRenderer")
+        public String source;
+
+        @Label("Format")
+        public String format;
+
+        @Label("Width")
+        public int width;
+
+        @Label("Height")
+        public int height;
+
+        @Label("Bytes Written")
+        @DataAmount
+        public long bytes;
+    }
+}
@@ -0,0 +1,415 @@
+// Two-level thumbnail cache: recent thumbnails in memory, all of them on disk keyed by file path and modification time.
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+
+public class ThumbnailCache {
+    // Callback for a thumbnail that was not ready when asked for; runs on the Event Dispatch Thread
+    public interface ThumbnailListener {
+        void thumbnailReady(File file, BufferedImage thumbnail);
+    }
+
+    // A file with the path and state its thumbnail is looked up by, read from disk once so a cell shown again reads nothing
+    public static class Key {
+        final File file;
+        final String path;
+        final long lastModified;
+        final long length;
+
+        public Key(File file) {
+            this.file = file;
+            this.path = file.getAbsolutePath();
+            this.lastModified = file.lastModified();
+            this.length = file.length();
+        }
+    }
+
+    // A thumbnail together with the file state it was made from; with no image, it records that the file could not be read
+    private static class Thumbnail {
+        final long lastModified;
+        final long length;
+        final BufferedImage image;
+
+        Thumbnail(long lastModified, long length, BufferedImage image) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.image = image;
+        }
+
+        // Method to check if the thumbnail was made from the file in the state the key saw
+        boolean matches(Key key) {
+            return lastModified == key.lastModified && length == key.length;
+        }
+    }
+
+    public static final int DEFAULT_SIZE = 96;                  // Longest side of a thumbnail in pixels
+    private static final int MEMORY_CAPACITY = 512;             // Thumbnails kept in memory, about 18 MB at the default size
+    private static final int FILE_MAGIC = 0x44535448;           // "DSTH"
+    private static final int MAX_EXIF_SEGMENTS = 16;            // Markers looked at for the EXIF segment before giving up
+    private static final File DEFAULT_DIRECTORY = new File(System.getProperty("user.home"),
+        ".drawingstudio" + File.separator + "thumbnails");
+    private static final ThumbnailCache INSTANCE = new ThumbnailCache(DEFAULT_DIRECTORY, DEFAULT_SIZE);
+
+    private final File directory;
+    private final int size;
+    // Access-ordered so iteration starts at the least recently shown thumbnail
+    private final LinkedHashMap<String, Thumbnail> memory = new LinkedHashMap<>(16, 0.75f, true);
+    // Requests are taken newest first, so the cells on screen now load before ones scrolled past
+    private final LinkedBlockingDeque<File> pending = new LinkedBlockingDeque<>();
+    private final Map<String, List<ThumbnailListener>> waiting = new HashMap<>();
+    private long memoryHits = 0;
+    private long diskHits = 0;
+    private long generated = 0;
+    private long failed = 0;
+
+    // Constructor to create a cache storing thumbnails of the given size in a directory
+    public ThumbnailCache(File directory, int size) {
+        this.directory = directory;
+        this.size = size;
+        int threads = Math.max(1, Math.min(2, Runtime.getRuntime().availableProcessors() - 1));
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "thumbnail");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    // Method to get the cache shared by the application
+    public static ThumbnailCache getInstance() {
+        return INSTANCE;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // Method to get a file's thumbnail if it is in memory, otherwise queue it and tell the listener once it is ready.
+    // A file that could not be read is not queued again until it changes, so the null returned for it stays null
+    public BufferedImage getThumbnail(File file, ThumbnailListener listener) {
+        return getThumbnail(new Key(file), listener);
+    }
+
+    // Method to get a thumbnail as above, for a file whose path and state the caller already has
+    public BufferedImage getThumbnail(Key key, ThumbnailListener listener) {
+        synchronized (this) {
+            Thumbnail thumbnail = memory.get(key.path);
+            if (thumbnail != null && thumbnail.matches(key)) {
+                memoryHits++;
+                return thumbnail.image;
+            }
+            List<ThumbnailListener> listeners = waiting.get(key.path);
+            if (listeners != null) {
+                // Already queued; move it to the front since it is being shown again
+                if (listener != null && !listeners.contains(listener)) listeners.add(listener);
+                pending.remove(key.file);
+                pending.offerFirst(key.file);
+                return null;
+            }
+            listeners = new ArrayList<>(1);
+            if (listener != null) listeners.add(listener);
+            waiting.put(key.path, listeners);
+        }
+        pending.offerFirst(key.file);
+        return null;
+    }
+
+    // Method to drop queued requests, for example when the palette switches to another folder
+    public void cancelPending() {
+        List<File> dropped = new ArrayList<>();
+        pending.drainTo(dropped);
+        synchronized (this) {
+            for (File file : dropped) {
+                waiting.remove(file.getAbsolutePath());
+            }
+        }
+    }
+
+    public synchronized long getMemoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    // Method to get the number of thumbnails made from the image files themselves
+    public synchronized long getGenerated() {
+        return generated;
+    }
+
+    // Method to get the number of files that were read and found not to be images this JDK can decode
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    // Method run by each worker thread to load queued thumbnails one at a time
+    private void work() {
+        while (true) {
+            File file;
+            try {
+                file = pending.takeFirst();
+            } catch (InterruptedException ex) {
+                return;
+            }
+            BufferedImage image = load(file);
+            List<ThumbnailListener> listeners;
+            synchronized (this) {
+                listeners = waiting.remove(file.getAbsolutePath());
+            }
+            if (image != null && listeners != null && !listeners.isEmpty()) {
+                SwingUtilities.invokeLater(() -> {
+                    for (ThumbnailListener listener : listeners) {
+                        listener.thumbnailReady(file, image);
+                    }
+                });
+            }
+        }
+    }
+
+    // Method to get a thumbnail from the disk cache, or make one and store it, keeping it in memory; returns null for
+    // unreadable files, which are remembered too, so they are not decoded again until their modification time or length changes
+    private BufferedImage load(File file) {
+        long lastModified = file.lastModified();
+        long length = file.length();
+        String key = file.getAbsolutePath();
+        File cached = getCacheFile(file);
+        Thumbnail thumbnail = readCached(cached, lastModified, length);
+        if (thumbnail != null) {
+            synchronized (this) {
+                diskHits++;
+                memory.put(key, thumbnail);
+                trimMemory();
+            }
+            return thumbnail.image;
+        }
+        BufferedImage image;
+        try {
+            image = createThumbnail(file);
+        } catch (IOException | RuntimeException ex) {
+            image = null;   // Not an image this JDK can read; the palette keeps showing the file name
+        }
+        writeCached(cached, lastModified, length, image);
+        synchronized (this) {
+            if (image != null) {
+                generated++;
+            } else {
+                failed++;
+            }
+            memory.put(key, new Thumbnail(lastModified, length, image));
+            trimMemory();
+        }
+        return image;
+    }
+
+    // Method to make a thumbnail from an embedded one if it is big enough, otherwise from a subsampled decode.
+    // Cameras embed theirs in the EXIF segment, which the JDK's JPEG reader does not look at, so it is read here first
+    private BufferedImage createThumbnail(File file) throws IOException {
+        ImageInputStream stream = ImageIO.createImageInputStream(file);
+        if (stream == null) {
+            throw new IOException("Cannot open " + file.getName());
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                throw new IOException("Unsupported image format.");
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, false);
+                BufferedImage source = null;
+                if ("jpeg".equalsIgnoreCase(reader.getFormatName())) {
+                    source = bigEnough(readExifThumbnail(file));
+                }
+                if (source == null && reader.readerSupportsThumbnails() && reader.getNumThumbnails(0) > 0) {
+                    source = bigEnough(reader.readThumbnail(0, 0));
+                }
+                if (source == null) {
+                    // Skip the pixels a thumbnail cannot show, as the canvas does for large inserts
+                    ImageReadParam param = reader.getDefaultReadParam();
+                    int subsampling = ImageDecodeService.getSubsampling(reader.getWidth(0), reader.getHeight(0),
+                        new Dimension(size, size));
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                    source = reader.read(0, param);
+                }
+                return fit(source);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            stream.close();
+        }
+    }
+
+    // Method to keep an embedded thumbnail only if it has at least the pixels of the thumbnail size
+    private BufferedImage bigEnough(BufferedImage embedded) {
+        return embedded != null && Math.max(embedded.getWidth(), embedded.getHeight()) >= size ? embedded : null;
+    }
+
+    // Method to decode the JPEG thumbnail a camera stores in IFD1 of the EXIF segment, or return null if there is none
+    private static BufferedImage readExifThumbnail(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file.toPath())))) {
+            if (in.readUnsignedShort() != 0xFFD8) return null;
+            for (int i = 0; i < MAX_EXIF_SEGMENTS; i++) {
+                int marker = in.readUnsignedShort();
+                if ((marker & 0xFF00) != 0xFF00 || marker == 0xFFDA) return null;  // Image data starts; no EXIF before it
+                int length = in.readUnsignedShort() - 2;
+                if (length < 0) return null;
+                if (marker != 0xFFE1) {
+                    in.skipBytes(length);
+                    continue;
+                }
+                byte[] segment = new byte[length];
+                in.readFully(segment);
+                if (length >= 6 && new String(segment, 0, 6, StandardCharsets.ISO_8859_1).equals("Exif\0\0")) {
+                    return decodeExifThumbnail(segment, 6);
+                }
+            }
+        } catch (EOFException ex) {
+            // A truncated file has no thumbnail to find
+        }
+        return null;
+    }
+
+    // Method to follow a TIFF structure from IFD0 to IFD1 and decode the JPEG its JPEGInterchangeFormat tags point at
+    private static BufferedImage decodeExifThumbnail(byte[] segment, int tiff) throws IOException {
+        if (segment.length < tiff + 8) return null;
+        boolean little = segment[tiff] == 'I' && segment[tiff + 1] == 'I';
+        if (!little && !(segment[tiff] == 'M' && segment[tiff + 1] == 'M')) return null;
+        if (readExifInt(segment, tiff + 2, 2, little) != 42) return null;
+
+        long ifd0 = readExifInt(segment, tiff + 4, 4, little);
+        long count0 = ifd0 >= 0 ? readExifInt(segment, tiff + ifd0, 2, little) : -1;
+        if (count0 < 0) return null;
+        long ifd1 = readExifInt(segment, tiff + ifd0 + 2 + count0 * 12, 4, little);
+        long count1 = ifd1 > 0 ? readExifInt(segment, tiff + ifd1, 2, little) : -1;
+        long offset = -1;
+        long length = -1;
+        for (int i = 0; i < count1; i++) {
+            long entry = tiff + ifd1 + 2 + i * 12L;
+            long tag = readExifInt(segment, entry, 2, little);
+            int type = (int) readExifInt(segment, entry + 2, 2, little);
+            long value = readExifInt(segment, entry + 8, type == 3 ? 2 : 4, little);   // Type 3 is SHORT, otherwise LONG
+            if (tag == 0x0201) offset = value;
+            if (tag == 0x0202) length = value;
+        }
+        if (offset <= 0 || length <= 0 || tiff + offset + length > segment.length) return null;
+        return ImageIO.read(new ByteArrayInputStream(segment, (int) (tiff + offset), (int) length));
+    }
+
+    // Method to read an unsigned 2 or 4 byte EXIF value in the segment's byte order, or -1 if it lies outside the segment
+    private static long readExifInt(byte[] segment, long position, int bytes, boolean little) {
+        if (position < 0 || position + bytes > segment.length) return -1;
+        long value = 0;
+        for (int i = 0; i < bytes; i++) {
+            int b = segment[(int) position + (little ? bytes - 1 - i : i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+
+    // Method to scale an image to fit inside the thumbnail size, keeping its aspect ratio
+    private BufferedImage fit(BufferedImage source) {
+        double fit = Math.min(1, Math.min((double) size / source.getWidth(), (double) size / source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * fit));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * fit));
+        BufferedImage thumbnail = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = thumbnail.createGraphics();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2.drawImage(source, 0, 0, width, height, null);
+        g2.dispose();
+        return thumbnail;
+    }
+
+    // Method to read a cached thumbnail, returning null if it is missing, damaged or made from an older file.
+    // A header with nothing after it records a file that could not be read, and comes back as a thumbnail with no image
+    private static Thumbnail readCached(File cached, long lastModified, long length) {
+        if (!cached.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cached.toPath())))) {
+            if (in.readInt() != FILE_MAGIC || in.readLong() != lastModified || in.readLong() != length) {
+                return null;
+            }
+            in.mark(1);
+            if (in.read() < 0) {
+                return new Thumbnail(lastModified, length, null);
+            }
+            in.reset();
+            BufferedImage image = ImageIO.read((InputStream) in);
+            return image != null ? new Thumbnail(lastModified, length, ImageImporter.importImage(image)) : null;
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    // Method to store a thumbnail after a header recording the file state, replacing any older one for the same path;
+    // with no image, only the header is written
+    private void writeCached(File cached, long lastModified, long length, BufferedImage image) {
+        try {
+            Files.createDirectories(directory.toPath());
+            File temp = new File(directory, cached.getName() + ".tmp" + Thread.currentThread().getId());
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp.toPath())))) {
+                out.writeInt(FILE_MAGIC);
+                out.writeLong(lastModified);
+                out.writeLong(length);
+                if (image != null) {
+                    ImageIO.write(image, "png", (OutputStream) out);
+                }
+            }
+            Files.move(temp.toPath(), cached.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            // The disk cache is only a speed-up; the thumbnail is still kept in memory
+        }
+    }
+
+    // Method to get the cache file for an image; one file per path, so a changed image overwrites its old thumbnail
+    private File getCacheFile(File file) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);    // Every Java platform is required to provide SHA-256
+        }
+        byte[] hash = digest.digest((file.getAbsolutePath() + "|" + size).getBytes(StandardCharsets.UTF_8));
+        StringBuilder sb = new StringBuilder(40);
+        for (int i = 0; i < 16; i++) {
+            sb.append(Character.forDigit((hash[i] >> 4) & 0xf, 16)).append(Character.forDigit(hash[i] & 0xf, 16));
+        }
+        return new File(directory, sb.append(".thumb").toString());
+    }
+
+    // Method to evict least recently shown thumbnails until the memory cache fits its capacity
+    private void trimMemory() {
+        Iterator<Thumbnail> it = memory.values().iterator();
+        while (memory.size() > MEMORY_CAPACITY && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
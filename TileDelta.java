@@ -0,0 +1,167 @@
+// Records the tiles of a drawing an operation touches, and turns them into a compressed, undoable before/after edit.
+import java.awt.Rectangle;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+public class TileDelta {
+    // Edit swapping the recorded tiles between their before and after pixels; both are stored compressed
+    private static class TileEdit implements EditHistory.Edit {
+        private final TiledDrawing drawing;
+        private final int[] tiles;                      // Tile numbers, in stored order
+        private final SpillStore store;
+        private final SpillStore.Blob before;
+        private final SpillStore.Blob after;
+        private final Rectangle bounds;
+        private final Consumer<Rectangle> changed;
+
+        TileEdit(TiledDrawing drawing, int[] tiles, SpillStore store,
+                 SpillStore.Blob before, SpillStore.Blob after, Rectangle bounds, Consumer<Rectangle> changed) {
+            this.drawing = drawing;
+            this.tiles = tiles;
+            this.store = store;
+            this.before = before;
+            this.after = after;
+            this.bounds = bounds;
+            this.changed = changed;
+        }
+
+        @Override
+        public void undo() {
+            restore(before);
+        }
+
+        @Override
+        public void redo() {
+            restore(after);
+        }
+
+        @Override
+        public long getBytes() {
+            return before.getLength() + after.getLength() + tiles.length * 4L + 96;
+        }
+
+        // Method to free the compressed tiles once the edit leaves the history
+        @Override
+        public void discard() {
+            store.release(before);
+            store.release(after);
+        }
+
+        // Method to write one side's tiles back into the drawing and report the area that changed
+        private void restore(SpillStore.Blob blob) {
+            byte[] bytes = new byte[TiledDrawing.TILE_SIZE * TiledDrawing.TILE_SIZE * 4];
+            IntBuffer ints = ByteBuffer.wrap(bytes).asIntBuffer();
+            try (DataInputStream in = new DataInputStream(
+                    new InflaterInputStream(new ByteArrayInputStream(store.get(blob))))) {
+                for (int tile : tiles) {
+                    if (in.readByte() == 0) {
+                        drawing.writeTile(tile, null);
+                        continue;
+                    }
+                    Rectangle r = drawing.getTileBounds(tile);
+                    int[] pixels = new int[r.width * r.height];
+                    in.readFully(bytes, 0, pixels.length * 4);
+                    ints.clear();
+                    ints.get(pixels);
+                    drawing.writeTile(tile, pixels);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            changed.accept(new Rectangle(bounds));
+        }
+    }
+
+    private final TiledDrawing drawing;
+    // Pixels of each touched tile before the operation; a null value means the tile was empty
+    private final Map<Integer, int[]> before = new LinkedHashMap<>();
+
+    // Constructor to start recording an operation on a drawing
+    public TileDelta(TiledDrawing drawing) {
+        this.drawing = drawing;
+    }
+
+    // Method to save the tiles under an area that is about to be drawn on; tiles already saved keep their first state
+    public void capture(int x, int y, int width, int height) {
+        int[] range = drawing.getTileRange(x, y, width, height);
+        if (range == null) return;
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[2]; column++) {
+                int tile = drawing.getTile(column, row);
+                if (!before.containsKey(tile)) before.put(tile, drawing.readTile(tile));
+            }
+        }
+    }
+
+    // Method to save every tile holding pixels, for operations that change the whole drawing; empty tiles cannot lose anything
+    public void captureAll() {
+        for (int tile : drawing.getLiveTiles()) {
+            if (!before.containsKey(tile)) before.put(tile, drawing.readTile(tile));
+        }
+    }
+
+    // Method to compare the saved tiles with the drawing now and build an edit for those that changed; returns null if none did
+    public EditHistory.Edit finish(SpillStore store, Consumer<Rectangle> changed) {
+        List<Integer> changedTiles = new ArrayList<>();
+        List<int[]> beforeTiles = new ArrayList<>();
+        List<int[]> afterTiles = new ArrayList<>();
+        Rectangle bounds = null;
+        for (Map.Entry<Integer, int[]> entry : before.entrySet()) {
+            int[] now = drawing.readTile(entry.getKey());
+            if (Arrays.equals(entry.getValue(), now)) continue;
+            changedTiles.add(entry.getKey());
+            beforeTiles.add(entry.getValue());
+            afterTiles.add(now);
+            Rectangle r = drawing.getTileBounds(entry.getKey());
+            bounds = bounds == null ? r : bounds.union(r);
+        }
+        before.clear();
+        if (changedTiles.isEmpty()) return null;
+
+        int[] tiles = new int[changedTiles.size()];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = changedTiles.get(i);
+        }
+        return new TileEdit(drawing, tiles, store,
+            store.put(compress(beforeTiles)), store.put(compress(afterTiles)), bounds, changed);
+    }
+
+    // Method to deflate a run of tiles into one stream, each behind a byte saying whether it holds pixels; strokes leave long runs of equal pixels, which compress well
+    private static byte[] compress(List<int[]> tiles) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        byte[] buffer = new byte[TiledDrawing.TILE_SIZE * TiledDrawing.TILE_SIZE * 4];
+        IntBuffer ints = ByteBuffer.wrap(buffer).asIntBuffer();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+            for (int[] tile : tiles) {
+                if (tile == null) {
+                    out.write(0);
+                    continue;
+                }
+                out.write(1);
+                ints.clear();
+                ints.put(tile);
+                out.write(buffer, 0, tile.length * 4);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);     // Writing to memory does not fail
+        } finally {
+            deflater.end();
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,193 @@
+// Transparent drawing surface stored as fixed-size tiles, each allocated the first time something is drawn on it.
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.BitSet;
+
+public class TiledDrawing {
+    public static final int TILE_SIZE = 64;
+
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+    private final BufferedImage[] tiles;    // Row by row; null for tiles that are empty
+    private final BitSet live;
+    private final BitSet shared = new BitSet();     // Tiles whose image a snapshot also holds, copied before they are drawn on
+    private int snapshotCount = 0;
+
+    // Constructor to create an empty surface; no pixels are allocated until something is drawn
+    public TiledDrawing(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.columns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        this.rows = (height + TILE_SIZE - 1) / TILE_SIZE;
+        this.tiles = new BufferedImage[columns * rows];
+        this.live = new BitSet();
+    }
+
+    // Constructor for a snapshot, sharing the images of another surface's tiles
+    private TiledDrawing(TiledDrawing source) {
+        this.width = source.width;
+        this.height = source.height;
+        this.columns = source.columns;
+        this.rows = source.rows;
+        this.tiles = source.tiles.clone();
+        this.live = (BitSet) source.live.clone();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    // Method to get the number of tiles holding pixels
+    public int getLiveTileCount() {
+        return live.cardinality();
+    }
+
+    // Method to get the tile number at a column and row
+    public int getTile(int column, int row) {
+        return row * columns + column;
+    }
+
+    // Method to get the image of a tile, or null if the tile is empty
+    public BufferedImage getTileImage(int tile) {
+        return tiles[tile];
+    }
+
+    // Method to get the image of a tile to draw on, allocating a transparent one if the tile is empty
+    // and copying it first if a snapshot still holds it
+    public BufferedImage getOrCreateTileImage(int tile) {
+        BufferedImage image = tiles[tile];
+        if (image == null) {
+            Rectangle r = getTileBounds(tile);
+            image = new BufferedImage(r.width, r.height, BufferedImage.TYPE_INT_ARGB);
+            tiles[tile] = image;
+            live.set(tile);
+        } else if (shared.get(tile)) {
+            BufferedImage copy = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            copy.getRaster().setDataElements(0, 0, image.getRaster());
+            tiles[tile] = copy;
+            image = copy;
+        }
+        shared.clear(tile);
+        return image;
+    }
+
+    // Method to take a copy-on-write snapshot: it shares the current tile images, and whichever tile
+    // is drawn on next is copied first, so the snapshot can be read on another thread while drawing goes on
+    public TiledDrawing snapshot() {
+        shared.or(live);
+        snapshotCount++;
+        return new TiledDrawing(this);
+    }
+
+    // Method to get the number of snapshots taken, so holders of a tile image can tell it may now be shared
+    public int getSnapshotCount() {
+        return snapshotCount;
+    }
+
+    // Method to get the surface area a tile covers; tiles on the right and bottom edges may be smaller
+    public Rectangle getTileBounds(int tile) {
+        int x = (tile % columns) * TILE_SIZE;
+        int y = (tile / columns) * TILE_SIZE;
+        return new Rectangle(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+    }
+
+    // Method to get the range of tiles under an area as {minColumn, minRow, maxColumn, maxRow}, or null if it misses the surface
+    public int[] getTileRange(int x, int y, int w, int h) {
+        int minColumn = Math.max(0, Math.floorDiv(x, TILE_SIZE));
+        int minRow = Math.max(0, Math.floorDiv(y, TILE_SIZE));
+        int maxColumn = Math.min(columns - 1, Math.floorDiv(x + w - 1, TILE_SIZE));
+        int maxRow = Math.min(rows - 1, Math.floorDiv(y + h - 1, TILE_SIZE));
+        if (w <= 0 || h <= 0 || minColumn > maxColumn || minRow > maxRow) return null;
+        return new int[] {minColumn, minRow, maxColumn, maxRow};
+    }
+
+    // Method to get the numbers of the tiles holding pixels, in row order
+    public int[] getLiveTiles() {
+        return live.stream().toArray();
+    }
+
+    // Method to copy a tile's pixels out, or get null if the tile is empty
+    public int[] readTile(int tile) {
+        BufferedImage image = tiles[tile];
+        if (image == null) return null;
+        return (int[]) image.getRaster().getDataElements(0, 0, image.getWidth(), image.getHeight(), null);
+    }
+
+    // Method to replace a tile's pixels; null empties the tile
+    public void writeTile(int tile, int[] pixels) {
+        if (pixels == null) {
+            tiles[tile] = null;
+            live.clear(tile);
+            shared.clear(tile);
+            return;
+        }
+        BufferedImage image = getOrCreateTileImage(tile);
+        image.getRaster().setDataElements(0, 0, image.getWidth(), image.getHeight(), pixels);
+    }
+
+    // Method to free a tile whose pixels are all transparent, such as one an eraser has wiped
+    public void releaseIfEmpty(int tile) {
+        BufferedImage image = tiles[tile];
+        if (image == null) return;
+        int[] pixels = readTile(tile);
+        for (int pixel : pixels) {
+            if ((pixel >>> 24) != 0) return;
+        }
+        tiles[tile] = null;
+        live.clear(tile);
+        shared.clear(tile);
+    }
+
+    // Method to empty the surface, visiting only the tiles that hold pixels
+    public void clear() {
+        for (int tile = live.nextSetBit(0); tile >= 0; tile = live.nextSetBit(tile + 1)) {
+            tiles[tile] = null;
+        }
+        live.clear();
+        shared.clear();
+    }
+
+    // Method to draw the live tiles at their places on the surface, as when compositing it onto a full-size image
+    public void paint(Graphics g) {
+        for (int tile = live.nextSetBit(0); tile >= 0; tile = live.nextSetBit(tile + 1)) {
+            Rectangle r = getTileBounds(tile);
+            g.drawImage(tiles[tile], r.x, r.y, null);
+        }
+    }
+
+    // Method to draw the live tiles under an area of the surface, stretched by a scale, onto a component; returns how many were drawn
+    public int paintScaled(Graphics2D g, Rectangle area, double xScale, double yScale) {
+        int[] range = getTileRange(area.x, area.y, area.width, area.height);
+        if (range == null) return 0;
+        int drawn = 0;
+        // Every tile goes through the same scale, so pixels are sampled exactly as if the surface were one image, with no seams
+        AffineTransform transform = new AffineTransform();
+        for (int row = range[1]; row <= range[3]; row++) {
+            for (int column = range[0]; column <= range[2]; column++) {
+                BufferedImage image = tiles[getTile(column, row)];
+                if (image == null) continue;
+                transform.setTransform(xScale, 0, 0, yScale, column * TILE_SIZE * xScale, row * TILE_SIZE * yScale);
+                g.drawImage(image, transform, null);
+                drawn++;
+            }
+        }
+        return drawn;
+    }
+}
@@ -0,0 +1,172 @@
+// Exports very large LeftCanvas scenes by rendering tiles in parallel and streaming them to the image encoder.
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.awt.image.WritableRaster;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class TiledExporter {
+    static final int TILE_SIZE = 256;                               // Side of each square tile rendered by one task
+    static final long TILED_EXPORT_MIN_PIXELS = 4096L * 4096L;       // Canvases at least this large are exported in tiles
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    // Renders one tile of a band by drawing only the canvas images that intersect it
+    private static class TileTask extends RecursiveAction {
+        private final LeftCanvas.Snapshot canvas;
+        private final BufferedImage target;
+        private final Rectangle region;     // Tile area in canvas coordinates
+        private final int targetX;
+        private final int targetY;
+
+        TileTask(LeftCanvas.Snapshot canvas, BufferedImage target, Rectangle region, int targetX, int targetY) {
+            this.canvas = canvas;
+            this.target = target;
+            this.region = region;
+            this.targetX = targetX;
+            this.targetY = targetY;
+        }
+
+        @Override
+        protected void compute() {
+            // Tasks write disjoint sub-images of the shared target, so no locking is needed
+            Graphics2D g2 = target.getSubimage(targetX, targetY, region.width, region.height).createGraphics();
+            canvas.renderRegion(g2, region);
+            g2.dispose();
+        }
+    }
+
+    // Image that renders one full-width band of tiles at a time as the encoder asks for rows
+    private static class BandedCanvasImage implements RenderedImage {
+        private final LeftCanvas.Snapshot canvas;
+        private final int width;
+        private final int height;
+        private final BufferedImage band;
+        private final ColorModel colorModel;
+        private final SampleModel sampleModel;
+        private int bandIndex = -1;     // Band currently held in band, or -1 before the first request
+
+        BandedCanvasImage(LeftCanvas.Snapshot canvas, int width, int height) {
+            this.canvas = canvas;
+            this.width = width;
+            this.height = height;
+            this.band = new BufferedImage(width, Math.min(TILE_SIZE, height), BufferedImage.TYPE_INT_ARGB);
+            this.colorModel = band.getColorModel();
+            this.sampleModel = band.getSampleModel().createCompatibleSampleModel(width, band.getHeight());
+        }
+
+        // Method to render a band, with its tiles spread across the fork/join pool
+        private void renderBand(int index) {
+            if (index == bandIndex) return;
+            int bandY = index * TILE_SIZE;
+            int bandHeight = Math.min(TILE_SIZE, height - bandY);
+            List<TileTask> tasks = new ArrayList<>();
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                Rectangle region = new Rectangle(x, bandY, Math.min(TILE_SIZE, width - x), bandHeight);
+                tasks.add(new TileTask(canvas, band, region, x, 0));
+            }
+            POOL.invoke(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            });
+            bandIndex = index;
+        }
+
+        // Method to copy a rectangle of rendered pixels, rendering each band it crosses in turn
+        @Override
+        public Raster getData(Rectangle rect) {
+            WritableRaster out = Raster.createWritableRaster(
+                sampleModel.createCompatibleSampleModel(rect.width, rect.height), new Point(rect.x, rect.y));
+            int firstBand = rect.y / TILE_SIZE;
+            int lastBand = (rect.y + rect.height - 1) / TILE_SIZE;
+            for (int i = firstBand; i <= lastBand; i++) {
+                renderBand(i);
+                int bandY = i * TILE_SIZE;
+                int bandHeight = Math.min(TILE_SIZE, height - bandY);
+                out.setRect(band.getRaster().createChild(0, 0, width, bandHeight, 0, bandY, null));
+            }
+            return out;
+        }
+
+        @Override
+        public Raster getData() {
+            return getData(new Rectangle(0, 0, width, height));
+        }
+
+        @Override
+        public WritableRaster copyData(WritableRaster raster) {
+            Raster data = getData(raster != null ? raster.getBounds() : new Rectangle(0, 0, width, height));
+            if (raster == null) return (WritableRaster) data;
+            raster.setRect(data);
+            return raster;
+        }
+
+        @Override
+        public Raster getTile(int tileX, int tileY) {
+            int y = tileY * TILE_SIZE;
+            return getData(new Rectangle(0, y, width, Math.min(TILE_SIZE, height - y)));
+        }
+
+        @Override public Vector<RenderedImage> getSources() { return null; }
+        @Override public Object getProperty(String name) { return java.awt.Image.UndefinedProperty; }
+        @Override public String[] getPropertyNames() { return null; }
+        @Override public ColorModel getColorModel() { return colorModel; }
+        @Override public SampleModel getSampleModel() { return sampleModel; }
+        @Override public int getWidth() { return width; }
+        @Override public int getHeight() { return height; }
+        @Override public int getMinX() { return 0; }
+        @Override public int getMinY() { return 0; }
+        @Override public int getNumXTiles() { return 1; }
+        @Override public int getNumYTiles() { return (height + TILE_SIZE - 1) / TILE_SIZE; }
+        @Override public int getMinTileX() { return 0; }
+        @Override public int getMinTileY() { return 0; }
+        @Override public int getTileWidth() { return width; }
+        @Override public int getTileHeight() { return TILE_SIZE; }
+        @Override public int getTileGridXOffset() { return 0; }
+        @Override public int getTileGridYOffset() { return 0; }
+    }
+
+    // Method to check whether a canvas is large enough to be worth exporting in tiles
+    public static boolean shouldTile(int width, int height) {
+        return (long) width * height >= TILED_EXPORT_MIN_PIXELS;
+    }
+
+    // Method to get an image of a canvas snapshot rendered in parallel tiles; for PNG it renders band by band as the
+    // encoder reads it, so memory is bounded by one band of tiles, while JPEG needs the whole raster up front
+    public static RenderedImage createImage(LeftCanvas.Snapshot canvas, String format) {
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        boolean jpeg = format.equalsIgnoreCase("jpg") || format.equalsIgnoreCase("jpeg");
+        return jpeg ? renderOpaque(canvas, width, height) : new BandedCanvasImage(canvas, width, height);
+    }
+
+    // Method to render every tile in parallel into one opaque image, since the JPEG writer needs the whole raster at once
+    private static BufferedImage renderOpaque(LeftCanvas.Snapshot canvas, int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        List<TileTask> tasks = new ArrayList<>();
+        for (int y = 0; y < height; y += TILE_SIZE) {
+            for (int x = 0; x < width; x += TILE_SIZE) {
+                Rectangle region = new Rectangle(x, y, Math.min(TILE_SIZE, width - x), Math.min(TILE_SIZE, height - y));
+                tasks.add(new TileTask(canvas, image, region, x, y));
+            }
+        }
+        POOL.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+        return image;
+    }
+}
@@ -2,17 +2,18 @@
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
-import javax.imageio.ImageIO;
 
 public class Toolbar extends JPanel implements ActionListener, ChangeListener {
     // LeftCanvas Buttons
     private JButton addAnimalBtn, addFlowerBtn, loadButton, saveButton, composeCanvasButton, rotateCanvasButton, deleteBtn, newCanvasButton;
+    private JButton saveSceneButton, openSceneButton;
 
     // RightCanvas Buttons
     private JSlider penSizeSlider = new JSlider(JSlider.HORIZONTAL, 1, 20, 4);
@@ -45,6 +46,8 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
         rotateCanvasButton = createIconButton("resources/icons/rotate.png", "Rotate Left Canvas 90°");
         deleteBtn = createIconButton("resources/icons/delete.png", "Delete Selected Image");
         newCanvasButton = createIconButton("resources/icons/new.png", "Create New Canvas");
+        saveSceneButton = createTextButton("Save Scene", "Save Left Canvas as an Editable Scene");
+        openSceneButton = createTextButton("Open Scene", "Open a Saved Scene in the Left Canvas");
 
         leftPanel.add(addAnimalBtn);
         leftPanel.add(addFlowerBtn);
@@ -54,6 +57,8 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
         leftPanel.add(rotateCanvasButton);
         leftPanel.add(deleteBtn);
         leftPanel.add(newCanvasButton);
+        leftPanel.add(saveSceneButton);
+        leftPanel.add(openSceneButton);
 
         // Right Panel
         JPanel rightPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT));
@@ -83,14 +88,14 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
         colorButton.setBorder(BorderFactory.createEmptyBorder());
 
         updateColorButtonIcon(rightCanvas.getPenColor());
-        colorButton.addActionListener(_ -> {
+        colorButton.addActionListener(e -> {
             JColorChooser chooser = new JColorChooser(rightCanvas.getPenColor());
             JDialog dialog = JColorChooser.createDialog(
                 null,
                 "Choose Pen Color",
                 true,
                 chooser,
-                _ -> {
+                ok -> {
                     rightCanvas.setPenColor(chooser.getColor());
                     updateColorButtonIcon(chooser.getColor());
                 },
@@ -122,6 +127,8 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
         rotateCanvasButton.addActionListener(this);
         deleteBtn.addActionListener(this);
         newCanvasButton.addActionListener(this);
+        saveSceneButton.addActionListener(this);
+        openSceneButton.addActionListener(this);
 
         clearBtn.addActionListener(this);
         loadRightButton.addActionListener(this);
@@ -143,6 +150,14 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
         return button;
     }
 
+    // Creates a text button with tooltip for actions that have no icon.
+    private JButton createTextButton(String text, String tooltip) {
+        JButton button = new JButton(text);
+        button.setToolTipText(tooltip);
+        button.setFocusPainted(false);
+        return button;
+    }
+
     // Updates the color button icon to reflect the current pen color.
     private void updateColorButtonIcon(Color color) {
         BufferedImage image = new BufferedImage(32, 32, BufferedImage.TYPE_INT_ARGB);
@@ -183,6 +198,10 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
             leftCanvas.deleteSelectedImage();
         } else if (src == newCanvasButton) {
             createNewCanvas();
+        } else if (src == saveSceneButton) {
+            saveScene();
+        } else if (src == openSceneButton) {
+            openScene();
         }
         // RightCanvas actions
         else if (src == clearBtn) {
@@ -220,12 +239,9 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
         if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
             try {
-                BufferedImage image = ImageIO.read(file);
-                if (image != null) {
-                    leftCanvas.insertImage(image, type);
-                } else {
-                    JOptionPane.showMessageDialog(this, "Unsupported image format.");
-                }
+                // Goes through the image registry, so re-inserting a file shares its raster instead of decoding it again;
+                // new files decode in the background while the canvas shows a placeholder and reports failures itself
+                leftCanvas.insertImage(file, type);
             } catch (IOException ex) {
                 JOptionPane.showMessageDialog(this, "Failed to load image: " + ex.getMessage());
             }
@@ -254,19 +270,66 @@ public class Toolbar extends JPanel implements ActionListener, ChangeListener {
                 file = new File(file.getAbsolutePath() + "." + format);
             }
 
+            // Only the snapshot is taken here; rendering and encoding run in the background, so drawing can carry on
+            // while a large canvas saves, and the save reports its own success or failure
             try {
                 if (canvas instanceof LeftCanvas) {
-                    ((LeftCanvas) canvas).saveCanvasToFile(file, format);
+                    LeftCanvas.Snapshot snapshot = ((LeftCanvas) canvas).snapshot();
+                    ImageSaver.start(null, file, format, "LeftCanvas", () -> snapshot.createImage(format));
                 } else if (canvas instanceof RightCanvas) {
-                    ((RightCanvas) canvas).saveCanvasToFile(file, format);
+                    // Drawings are replayed from their strokes, so they stay sharp at any export size
+                    Object[] sizes = {"1x (screen)", "2x", "4x (print)"};
+                    Object size = JOptionPane.showInputDialog(null, "Export size:", "Save Canvas",
+                        JOptionPane.PLAIN_MESSAGE, null, sizes, sizes[0]);
+                    if (size == null) return;
+                    double scale = size == sizes[2] ? 4 : size == sizes[1] ? 2 : 1;
+                    RightCanvas.Snapshot snapshot = ((RightCanvas) canvas).snapshot();
+                    ImageSaver.start(null, file, format, "RightCanvas", () -> snapshot.render(scale, format));
                 }
-                JOptionPane.showMessageDialog(null, "Canvas saved successfully!");
             } catch (IOException ex) {
+                // Images still decoding would be saved half drawn
                 JOptionPane.showMessageDialog(null, "Error saving: " + ex.getMessage());
             }
         }
     }
 
+    // Saves the LeftCanvas items, their transforms and source images to a scene file.
+    private void saveScene() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save Scene As");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Scene files", SceneFile.EXTENSION));
+
+        if (fileChooser.showSaveDialog(null) == JFileChooser.APPROVE_OPTION) {
+            File file = fileChooser.getSelectedFile();
+            if (!file.getName().toLowerCase().endsWith("." + SceneFile.EXTENSION)) {
+                file = new File(file.getAbsolutePath() + "." + SceneFile.EXTENSION);
+            }
+
+            try {
+                SceneFile.save(leftCanvas, file);
+                JOptionPane.showMessageDialog(null, "Scene saved successfully!");
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(null, "Error saving scene: " + ex.getMessage());
+            }
+        }
+    }
+
+    // Replaces the LeftCanvas contents with a saved scene.
+    private void openScene() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Open Scene");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Scene files", SceneFile.EXTENSION));
+
+        if (fileChooser.showOpenDialog(null) == JFileChooser.APPROVE_OPTION) {
+            try {
+                // Items appear immediately; their images decode in the background
+                SceneFile.load(leftCanvas, fileChooser.getSelectedFile());
+            } catch (IOException ex) {
+                JOptionPane.showMessageDialog(null, "Error opening scene: " + ex.getMessage());
+            }
+        }
+    }
+
     // Shared image loader for both canvases.
     private void loadImage(JPanel canvas) {
         JFileChooser fileChooser = new JFileChooser();
@@ -0,0 +1,59 @@
+// Tests that the registry shares a file's raster between its items, and a copy's once the copy has been hashed.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ImageRegistryTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    void sharesFilesByPathAndCopiesByContent() throws Exception {
+        File original = folder.resolve("original.png").toFile();
+        File copy = folder.resolve("copy.png").toFile();
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", original);
+        Files.copy(original.toPath(), copy.toPath());
+        ImageRegistry registry = ImageRegistry.getInstance();
+
+        BufferedImage first = registry.acquire(original, null, null).getImage();
+        BufferedImage second = registry.acquire(original, null, null).getImage();
+        assertSame(first, second);
+        assertEquals(2, registry.getReferenceCount(first));
+
+        // The copy is only known to match once both files are hashed, so its first insert decodes it separately
+        BufferedImage copied = registry.acquire(copy, null, null).getImage();
+        assertNotSame(first, copied);
+        for (int i = 0; i < 250 && !(registry.isHashed(original) && registry.isHashed(copy)); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(registry.isHashed(original) && registry.isHashed(copy));
+
+        Dimension half = new Dimension(32, 24);
+        ImageRegistry.Handle halfOriginal = registry.acquire(original, half, null);
+        ImageRegistry.Handle halfCopy = registry.acquire(copy, half, null);
+        assertEquals(2, halfOriginal.getSubsampling());
+        assertSame(halfOriginal.getImage(), halfCopy.getImage());
+        assertEquals(2, registry.getReferenceCount(halfOriginal.getImage()));
+
+        for (BufferedImage image : new BufferedImage[] { first, second, copied, halfOriginal.getImage(), halfCopy.getImage() }) {
+            assertTrue(registry.release(image));
+        }
+        assertEquals(0, registry.getReferenceCount(first));
+        assertEquals(0, registry.getReferenceCount(halfOriginal.getImage()));
+
+        // With their last references released, the files are forgotten too, and would be read and hashed afresh
+        assertFalse(registry.isHashed(original));
+        assertFalse(registry.isHashed(copy));
+    }
+}
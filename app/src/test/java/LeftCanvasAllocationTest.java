@@ -0,0 +1,114 @@
+// Tests that the LeftCanvas pointer and paint paths, including their flight recorder events, allocate nothing once warmed up.
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Graphics2D;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+class LeftCanvasAllocationTest {
+    private static final int WIDTH = 800;
+    private static final int HEIGHT = 600;
+    private static final int MARGIN = 100;          // Space around the canvas, where a press selects nothing
+    private static final int WARMUP = 20_000;       // Enough calls for the paths to be compiled and every cache filled
+    private static final int CALLS = 10_000;
+    private static final long ALLOWED_BYTES = CALLS; // Under a byte a call: slack for a one-off allocation by the runtime, not an object a call
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static LeftCanvas canvas;
+    private static MouseListener mouse;
+    private static MouseMotionListener motion;
+    private static final List<MouseEvent> presses = new ArrayList<>();
+    private static final List<MouseEvent> releases = new ArrayList<>();
+    private static final List<MouseEvent> moves = new ArrayList<>();
+
+    @BeforeAll
+    static void buildScene() throws Exception {
+        assertTrue(THREADS.isThreadAllocatedMemorySupported());
+        THREADS.setThreadAllocatedMemoryEnabled(true);
+        SwingUtilities.invokeAndWait(() -> {
+            canvas = new LeftCanvas();
+            canvas.setCanvasSize(WIDTH, HEIGHT);
+            canvas.setSize(WIDTH + 2 * MARGIN, HEIGHT + 2 * MARGIN);
+            Random random = new Random(7);
+            for (int i = 0; i < 40; i++) {
+                BufferedImage image = ImageImporter.importImage(new BufferedImage(60 + i, 40 + i, BufferedImage.TYPE_INT_ARGB));
+                CreationItem item = LeftCanvas.createItem(image, "custom");
+                item.rotate(random.nextDouble());
+                canvas.placeItem(item, random.nextInt(WIDTH - 120), random.nextInt(HEIGHT - 100));
+            }
+            mouse = canvas.getMouseListeners()[0];
+            motion = canvas.getMouseMotionListeners()[0];
+        });
+
+        // Events are made up front, as they are the toolkit's allocations rather than the canvas's
+        Random random = new Random(11);
+        for (int i = 0; i < 64; i++) {
+            int x = MARGIN + random.nextInt(WIDTH);
+            int y = MARGIN + random.nextInt(HEIGHT);
+            presses.add(new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, MouseEvent.BUTTON1_DOWN_MASK, x, y, 1, false, MouseEvent.BUTTON1));
+            releases.add(new MouseEvent(canvas, MouseEvent.MOUSE_RELEASED, 0, 0, x, y, 1, false, MouseEvent.BUTTON1));
+            moves.add(new MouseEvent(canvas, MouseEvent.MOUSE_MOVED, 0, 0, x + 3, y + 3, 0, false, MouseEvent.NOBUTTON));
+        }
+    }
+
+    @Test
+    void hitTestingAllocatesNothing() throws Exception {
+        assertAllocatesNothing(i -> {
+            mouse.mousePressed(presses.get(i % presses.size()));
+            mouse.mouseReleased(releases.get(i % releases.size()));
+        });
+    }
+
+    @Test
+    void movingThePointerAllocatesNothing() throws Exception {
+        SwingUtilities.invokeAndWait(() -> mouse.mousePressed(presses.get(0)));
+        assertAllocatesNothing(i -> motion.mouseMoved(moves.get(i % moves.size())));
+    }
+
+    // The selection's outline and handles are shapes, which Java2D allocates for as it rasterizes them,
+    // so the paint measured is of the items alone, with nothing selected
+    @Test
+    void paintingAllocatesNothing() throws Exception {
+        SwingUtilities.invokeAndWait(() -> mouse.mousePressed(
+            new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, MouseEvent.BUTTON1_DOWN_MASK, 1, 1, 1, false, MouseEvent.BUTTON1)));
+        BufferedImage screen = new BufferedImage(WIDTH + 2 * MARGIN, HEIGHT + 2 * MARGIN, BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D g2 = screen.createGraphics();
+        try {
+            assertAllocatesNothing(i -> canvas.paintComponent(g2));
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    // Call made once per iteration, given the iteration's index
+    private interface Call {
+        void run(int i);
+    }
+
+    // Method to warm a call up on the Event Dispatch Thread, then check that thread allocates nothing over CALLS more of it
+    private static void assertAllocatesNothing(Call call) throws Exception {
+        long[] bytes = new long[1];
+        SwingUtilities.invokeAndWait(() -> {
+            for (int i = 0; i < WARMUP; i++) {
+                call.run(i);
+            }
+            long before = THREADS.getCurrentThreadAllocatedBytes();
+            for (int i = 0; i < CALLS; i++) {
+                call.run(i);
+            }
+            bytes[0] = THREADS.getCurrentThreadAllocatedBytes() - before;
+        });
+        assertTrue(bytes[0] <= ALLOWED_BYTES, bytes[0] + " bytes allocated over " + CALLS + " calls");
+    }
+}
@@ -0,0 +1,139 @@
+// Tests LeftCanvas undo and redo, including edits trimmed from the history by its memory budget.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.Test;
+
+class LeftCanvasEditTest {
+    @Test
+    void undoesADeleteAfterItsInsertWasTrimmed() throws Exception {
+        LeftCanvas canvas = onEdt(LeftCanvas::new);
+        onEdt(() -> {
+            canvas.setSize(400, 400);
+            canvas.insertImage(new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB_PRE), "custom");
+            canvas.getMouseListeners()[0].mousePressed(
+                new MouseEvent(canvas, MouseEvent.MOUSE_PRESSED, 0, MouseEvent.BUTTON1_DOWN_MASK, 200, 200, 1, false, MouseEvent.BUTTON1));
+            canvas.deleteSelectedImage();
+
+            // Four edits of about 15.6 MB push the 64 MB history over budget by less than the 1 MB insert,
+            // so the insert is trimmed and the delete that followed it is kept
+            BufferedImage filler = new BufferedImage(2048, 1996, BufferedImage.TYPE_INT_ARGB_PRE);
+            for (int i = 0; i < 4; i++) {
+                canvas.insertImage(filler, "custom");
+            }
+            for (int i = 0; i < 4; i++) {
+                canvas.undo();
+            }
+            canvas.undo();
+            return null;
+        });
+
+        assertEquals(List.of(512), onEdt(() -> getItemWidths(canvas)));
+        assertFalse(onEdt(canvas::canUndo));
+    }
+
+    @Test
+    void undoesAndRedoesBulkTransformsOfATiledGrid() throws Exception {
+        LeftCanvas canvas = onEdt(LeftCanvas::new);
+        List<String> tiled = onEdt(() -> {
+            CreationItem template = LeftCanvas.createItem(new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB_PRE), "custom");
+            canvas.tileItem(template, 5, 5, 30, 40, 3, 2);
+            return describe(canvas);
+        });
+        assertEquals(List.of("5,5 0 1", "35,5 0 1", "65,5 0 1", "5,45 0 1", "35,45 0 1", "65,45 0 1"), tiled);
+
+        List<String> transformed = onEdt(() -> {
+            canvas.translateAll(10, -5);
+            canvas.rotateAll(0.5);
+            canvas.scaleAll(2);
+            return describe(canvas);
+        });
+        assertEquals("15,0 0.5 2", transformed.get(0));
+        assertEquals("75,40 0.5 2", transformed.get(5));
+
+        assertEquals(tiled, onEdt(() -> {
+            for (int i = 0; i < 3; i++) {
+                canvas.undo();
+            }
+            return describe(canvas);
+        }));
+        assertEquals(transformed, onEdt(() -> {
+            for (int i = 0; i < 3; i++) {
+                canvas.redo();
+            }
+            return describe(canvas);
+        }));
+    }
+
+    @Test
+    void recordsNoBulkEditThatChangesNothing() throws Exception {
+        LeftCanvas empty = onEdt(LeftCanvas::new);
+        assertFalse(onEdt(() -> {
+            empty.translateAll(10, 10);
+            empty.rotateAll(1);
+            empty.scaleAll(2);
+            return empty.canUndo();
+        }));
+
+        LeftCanvas canvas = onEdt(LeftCanvas::new);
+        assertFalse(onEdt(() -> {
+            canvas.tileItem(LeftCanvas.createItem(new BufferedImage(20, 10, BufferedImage.TYPE_INT_ARGB_PRE), "custom"), 0, 0, 30, 0, 2, 1);
+            canvas.translateAll(0, 0);
+            canvas.rotateAll(0);
+            canvas.scaleAll(1);
+            return canvas.canUndo();
+        }));
+        assertThrows(IllegalArgumentException.class, () -> onEdt(() -> {
+            canvas.scaleAll(0);
+            return null;
+        }));
+        assertTrue(onEdt(() -> {
+            canvas.scaleAll(0.5);
+            return canvas.canUndo();
+        }));
+    }
+
+    // Method to describe each item as "x,y rotation scale", bottom of the stack first
+    private static List<String> describe(LeftCanvas canvas) throws Exception {
+        List<String> items = new ArrayList<>();
+        canvas.visitImages((item, x, y, sourceFile, subsampling) ->
+            items.add(format(x) + "," + format(y) + " " + format(item.getRotation()) + " " + format(item.getScale())));
+        return items;
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    // Task run on the Event Dispatch Thread, where the canvas is used
+    private interface EdtTask<T> {
+        T run() throws Exception;
+    }
+
+    private static <T> T onEdt(EdtTask<T> task) throws Exception {
+        List<T> result = new ArrayList<>(1);
+        Exception[] failure = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result.add(task.run());
+            } catch (Exception ex) {
+                failure[0] = ex;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        return result.get(0);
+    }
+
+    private static List<Integer> getItemWidths(LeftCanvas canvas) throws Exception {
+        List<Integer> widths = new ArrayList<>();
+        canvas.visitImages((item, x, y, sourceFile, subsampling) -> widths.add(item.getImage().getWidth()));
+        return widths;
+    }
+}
@@ -0,0 +1,38 @@
+// Tests that mipmap levels are built on demand and released together with their source image.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.lang.ref.WeakReference;
+import org.junit.jupiter.api.Test;
+
+class MipmapChainTest {
+    @Test
+    void picksTheLevelForTheScale() {
+        BufferedImage source = new BufferedImage(256, 128, BufferedImage.TYPE_INT_ARGB);
+        assertSame(source, MipmapChain.getLevelFor(source, 1.0));
+        assertSame(source, MipmapChain.getLevelFor(source, 0.6));
+        assertEquals(128, MipmapChain.getLevelFor(source, 0.5).getWidth());
+        assertEquals(32, MipmapChain.getLevelFor(source, 0.1).getWidth());
+        // Halving stops before a side would drop below the minimum level size
+        assertEquals(8, MipmapChain.getLevelFor(source, 0.001).getHeight());
+        assertSame(MipmapChain.getLevelFor(source, 0.25), MipmapChain.getLevelFor(source, 0.25));
+    }
+
+    @Test
+    void droppedImageReleasesItsChain() throws InterruptedException {
+        BufferedImage source = new BufferedImage(512, 512, BufferedImage.TYPE_INT_ARGB);
+        MipmapChain.getLevelFor(source, 0.1);
+        int chains = MipmapChain.getChainCount();
+        WeakReference<BufferedImage> released = new WeakReference<>(source);
+        source = null;
+
+        for (int i = 0; i < 50 && released.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertNull(released.get(), "the source image is still reachable through its mipmap chain");
+        assertEquals(chains - 1, MipmapChain.getChainCount());
+    }
+}
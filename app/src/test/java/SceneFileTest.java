@@ -0,0 +1,85 @@
+// Tests saving and reopening scenes, including images one pixel wide and saving over the scene just opened.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SceneFileTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    void savesAndReopensOverTheSameFile() throws Exception {
+        File file = folder.resolve("test.scene").toFile();
+        LeftCanvas canvas = onEdt(LeftCanvas::new);
+        onEdt(() -> {
+            canvas.insertImage(createImage(1, 40, Color.RED), "custom");
+            canvas.insertImage(createImage(30, 20, Color.BLUE), "custom");
+            SceneFile.save(canvas, file);
+            return null;
+        });
+
+        LeftCanvas reopened = onEdt(LeftCanvas::new);
+        onEdt(() -> {
+            SceneFile.load(reopened, file);
+            return null;
+        });
+        for (int i = 0; i < 250 && onEdt(reopened::hasPendingLoads); i++) {
+            Thread.sleep(20);
+        }
+        List<Integer> widths = onEdt(() -> getItemWidths(reopened));
+        assertEquals(List.of(1, 30), widths);
+
+        // Nothing may still hold the file open or mapped, or it could not be replaced on every platform
+        onEdt(() -> {
+            SceneFile.save(reopened, file);
+            return null;
+        });
+        assertTrue(file.length() > 0);
+        String[] left = folder.toFile().list();
+        assertEquals(1, left.length, "temporary files were left behind");
+    }
+
+    // Task run on the Event Dispatch Thread, where the canvas is used
+    private interface EdtTask<T> {
+        T run() throws Exception;
+    }
+
+    private static <T> T onEdt(EdtTask<T> task) throws Exception {
+        List<T> result = new ArrayList<>(1);
+        Exception[] failure = new Exception[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                result.add(task.run());
+            } catch (Exception ex) {
+                failure[0] = ex;
+            }
+        });
+        if (failure[0] != null) throw failure[0];
+        return result.get(0);
+    }
+
+    private static List<Integer> getItemWidths(LeftCanvas canvas) throws Exception {
+        List<Integer> widths = new ArrayList<>();
+        canvas.visitImages((item, x, y, sourceFile, subsampling) -> widths.add(item.getImage().getWidth()));
+        return widths;
+    }
+
+    private static BufferedImage createImage(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, color.getRGB());
+            }
+        }
+        return image;
+    }
+}
@@ -0,0 +1,126 @@
+// Tests that a file which is not an image is decoded once, and again only after it changes, and that EXIF thumbnails are used.
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ThumbnailCacheTest {
+    @TempDir
+    Path folder;
+
+    @Test
+    void remembersFilesThatAreNotImages() throws Exception {
+        File directory = folder.resolve("thumbnails").toFile();
+        File file = folder.resolve("broken.png").toFile();
+        Files.write(file.toPath(), "not an image".getBytes(StandardCharsets.US_ASCII));
+
+        ThumbnailCache cache = new ThumbnailCache(directory, 32);
+        assertNull(cache.getThumbnail(file, null));
+        waitFor(cache::getFailed, 1);
+        for (int i = 0; i < 10; i++) {
+            assertNull(cache.getThumbnail(file, null));
+        }
+        assertEquals(1, cache.getFailed());
+        assertEquals(10, cache.getMemoryHits());
+
+        // A new session finds the failure in the disk cache instead of decoding the file again
+        ThumbnailCache reopened = new ThumbnailCache(directory, 32);
+        assertNull(reopened.getThumbnail(file, null));
+        waitFor(reopened::getDiskHits, 1);
+        assertNull(reopened.getThumbnail(file, null));
+        assertEquals(0, reopened.getFailed());
+
+        // Once the file changes into an image, it is decoded again
+        ImageIO.write(new BufferedImage(64, 48, BufferedImage.TYPE_INT_RGB), "png", file);
+        file.setLastModified(file.lastModified() + 2000);
+        assertNull(reopened.getThumbnail(file, null));
+        waitFor(reopened::getGenerated, 1);
+        BufferedImage thumbnail = reopened.getThumbnail(file, null);
+        assertNotNull(thumbnail);
+        assertEquals(32, thumbnail.getWidth());
+    }
+
+    @Test
+    void usesTheThumbnailInAnExifSegment() throws Exception {
+        File file = folder.resolve("photo.jpg").toFile();
+        byte[] photo = writeJpeg(filled(800, 600, Color.BLUE));
+        byte[] embedded = writeJpeg(filled(160, 120, Color.RED));
+
+        // TIFF structure in big-endian order: an empty IFD0 followed by an IFD1 pointing at the embedded JPEG
+        ByteArrayOutputStream exif = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(exif);
+        out.writeBytes("Exif\0\0MM");
+        out.writeShort(42);
+        out.writeInt(8);            // IFD0
+        out.writeShort(0);
+        out.writeInt(14);           // IFD1
+        out.writeShort(2);
+        out.writeShort(0x0201);
+        out.writeShort(4);
+        out.writeInt(1);
+        out.writeInt(44);           // JPEGInterchangeFormat, just past IFD1
+        out.writeShort(0x0202);
+        out.writeShort(4);
+        out.writeInt(1);
+        out.writeInt(embedded.length);
+        out.writeInt(0);
+        out.write(embedded);
+
+        // The APP1 segment goes straight after the start of image marker, as cameras write it
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        jpeg.write(photo, 0, 2);
+        jpeg.write(0xFF);
+        jpeg.write(0xE1);
+        jpeg.write((exif.size() + 2) >> 8);
+        jpeg.write((exif.size() + 2) & 0xFF);
+        exif.writeTo(jpeg);
+        jpeg.write(photo, 2, photo.length - 2);
+        Files.write(file.toPath(), jpeg.toByteArray());
+
+        ThumbnailCache cache = new ThumbnailCache(folder.resolve("thumbnails").toFile(), 32);
+        assertNull(cache.getThumbnail(file, null));
+        waitFor(cache::getGenerated, 1);
+        BufferedImage thumbnail = cache.getThumbnail(file, null);
+        assertNotNull(thumbnail);
+        assertEquals(32, thumbnail.getWidth());
+        Color center = new Color(thumbnail.getRGB(16, 12));
+        assertTrue(center.getRed() > 200 && center.getBlue() < 50, "thumbnail made from the photo itself: " + center);
+    }
+
+    private static BufferedImage filled(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2 = image.createGraphics();
+        g2.setColor(color);
+        g2.fillRect(0, 0, width, height);
+        g2.dispose();
+        return image;
+    }
+
+    private static byte[] writeJpeg(BufferedImage image) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", bytes);
+        return bytes.toByteArray();
+    }
+
+    // Method to wait up to five seconds for a counter to reach a value, then check it did
+    private static void waitFor(LongSupplier counter, long expected) throws InterruptedException {
+        for (int i = 0; i < 250 && counter.getAsLong() < expected; i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, counter.getAsLong());
+    }
+}
@@ -0,0 +1,253 @@
+// Workloads for the JMH benchmarks, built from the bundled animal/ and flower/ images and run on the Event Dispatch Thread.
+import benchmarks.Workload;
+import benchmarks.Workloads;
+import java.awt.Color;
+import java.awt.Component;
+import java.awt.Graphics2D;
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import javax.imageio.ImageIO;
+import javax.swing.SwingUtilities;
+
+public class StudioWorkloads implements Workloads {
+    private static final long SEED = 20240501L;     // Fixed, so every run lays out the same scenes
+
+    private final List<BufferedImage> assets = new ArrayList<>();
+    private final List<String> assetTypes = new ArrayList<>();
+
+    // Constructor to decode the bundled images once, the same way the application imports them
+    public StudioWorkloads() {
+        try {
+            for (String type : new String[] {"animal", "flower"}) {
+                File[] files = new File(type).listFiles();
+                if (files == null) {
+                    throw new IOException("Asset folder " + type + "/ not found; run from the project folder");
+                }
+                Arrays.sort(files);
+                for (File file : files) {
+                    BufferedImage image = ImageIO.read(file);
+                    if (image == null) continue;
+                    assets.add(ImageImporter.importImage(image));
+                    assetTypes.add(type);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (assets.isEmpty()) {
+            throw new IllegalStateException("No readable images in animal/ or flower/");
+        }
+    }
+
+    // Full-resolution capture, as used by the composer and for saving
+    @Override
+    public Workload captureCanvas(int width, int height, int items) {
+        LeftCanvas canvas = onEdt(() -> buildScene(width, height, items));
+        return () -> onEdt(canvas::captureCanvas);
+    }
+
+    // A press selects the topmost item under the point and a move tests the selection's handles;
+    // a batch of points runs per hop to the Event Dispatch Thread, so the hop is not what gets timed
+    @Override
+    public Workload hitTest(int items, int points) {
+        LeftCanvas canvas = onEdt(() -> buildScene(1920, 1080, items));
+        Random random = new Random(SEED);
+        int[] coordinates = new int[1024];
+        for (int i = 0; i < coordinates.length; i += 2) {
+            coordinates[i] = random.nextInt(1920);
+            coordinates[i + 1] = random.nextInt(1080);
+        }
+        int[] next = {0};
+        return () -> onEdt(() -> {
+            for (int p = 0; p < points; p++) {
+                int i = next[0];
+                next[0] = (i + 2) % coordinates.length;
+                dispatchMouse(canvas, MouseEvent.MOUSE_PRESSED, coordinates[i], coordinates[i + 1]);
+                dispatchMouse(canvas, MouseEvent.MOUSE_RELEASED, coordinates[i], coordinates[i + 1]);
+                dispatchMouse(canvas, MouseEvent.MOUSE_MOVED, coordinates[i] + 3, coordinates[i + 1] + 3);
+            }
+            return canvas;
+        });
+    }
+
+    // One move, turn and scale of every item, each a single pass over the scene store; they alternate direction so the scene stays put
+    @Override
+    public Workload bulkTransform(int items) {
+        LeftCanvas canvas = onEdt(() -> {
+            LeftCanvas left = new LeftCanvas();
+            left.setCanvasSize(1920, 1080);
+            left.setSize(1920, 1080);
+            CreationItem template = LeftCanvas.createItem(assets.get(0), assetTypes.get(0));
+            template.scale(24.0 / Math.max(assets.get(0).getWidth(), assets.get(0).getHeight()));
+            int columns = (int) Math.ceil(Math.sqrt(items));
+            left.tileItem(template, 0, 0, 1920.0 / columns, 1080.0 / columns, columns, (items + columns - 1) / columns);
+            return left;
+        });
+        int[] count = {0};
+        return () -> onEdt(() -> {
+            double sign = count[0]++ % 2 == 0 ? 1 : -1;
+            canvas.translateAll(sign * 4, -sign * 4);
+            canvas.rotateAll(sign * 0.1);
+            canvas.scaleAll(sign > 0 ? 1.25 : 0.8);
+            return canvas;
+        });
+    }
+
+    // Rotation of a captured canvas, as the composer does when saving a rotated composition
+    @Override
+    public Workload rotate(int width, int height, int quarterTurns) {
+        BufferedImage capture = onEdt(() -> buildScene(width, height, 50).captureCanvas());
+        return () -> RasterRotator.rotate(capture, quarterTurns);
+    }
+
+    // A whole pen stroke: press, drags, release, then the repaint that shows it
+    @Override
+    public Workload stroke(int points) {
+        RightCanvas canvas = onEdt(StudioWorkloads::createRightCanvas);
+        BufferedImage screen = new BufferedImage(canvas.getWidth(), canvas.getHeight(), BufferedImage.TYPE_INT_RGB);
+        int[] count = {0};
+        return () -> onEdt(() -> {
+            drawStroke(canvas, count[0]++, points);
+            Graphics2D g2 = screen.createGraphics();
+            canvas.paint(g2);
+            g2.dispose();
+            return screen;
+        });
+    }
+
+    // Saving to a format from either canvas; a save that leaves an empty file fails, as its timing would mean nothing
+    @Override
+    public Workload save(String canvasName, String format) {
+        File file;
+        try {
+            file = File.createTempFile("benchmark", "." + format);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        Callable<Object> save;
+        if (canvasName.equals("LeftCanvas")) {
+            LeftCanvas canvas = onEdt(() -> buildScene(1920, 1080, 100));
+            save = () -> {
+                canvas.saveCanvasToFile(file, format);
+                return file;
+            };
+        } else if (canvasName.equals("RightCanvas")) {
+            RightCanvas canvas = onEdt(() -> {
+                RightCanvas right = createRightCanvas();
+                for (int i = 0; i < 40; i++) {
+                    drawStroke(right, i, 200);
+                }
+                return right;
+            });
+            save = () -> {
+                canvas.saveCanvasToFile(file, format);
+                return file;
+            };
+        } else {
+            file.delete();
+            throw new IllegalArgumentException("Unknown canvas: " + canvasName);
+        }
+        return new Workload() {
+            @Override
+            public Object run() throws Exception {
+                onEdt(save);
+                if (file.length() == 0) {
+                    throw new IOException("Nothing was written to " + file);
+                }
+                return file;
+            }
+
+            @Override
+            public void close() {
+                file.delete();
+            }
+        };
+    }
+
+    // Method to run a task on the Event Dispatch Thread, as the application does, and return its result
+    private static <T> T onEdt(Callable<T> task) {
+        List<T> result = new ArrayList<>(1);
+        Exception[] failure = new Exception[1];
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                try {
+                    result.add(task.call());
+                } catch (Exception ex) {
+                    failure[0] = ex;
+                }
+            });
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (InvocationTargetException ex) {
+            throw new IllegalStateException(ex.getCause());
+        }
+        if (failure[0] != null) {
+            throw new IllegalStateException(failure[0]);
+        }
+        return result.get(0);
+    }
+
+    // Method to lay out a canvas with items from the bundled images, scattered, scaled, rotated and flipped from a fixed seed
+    private LeftCanvas buildScene(int width, int height, int items) {
+        LeftCanvas canvas = new LeftCanvas();
+        canvas.setCanvasSize(width, height);
+        canvas.setSize(width, height);
+        Random random = new Random(SEED);
+        double target = Math.min(width, height) / 4.0;
+        for (int i = 0; i < items; i++) {
+            BufferedImage image = assets.get(i % assets.size());
+            CreationItem item = LeftCanvas.createItem(image, assetTypes.get(i % assets.size()));
+            double scale = target * (0.4 + 0.6 * random.nextDouble()) / Math.max(image.getWidth(), image.getHeight());
+            item.scale(scale);
+            item.rotate(random.nextDouble() * 2 * Math.PI);
+            if (random.nextInt(4) == 0) item.flipHorizontal();
+            double w = image.getWidth() * scale;
+            double h = image.getHeight() * scale;
+            canvas.placeItem(item, random.nextDouble() * (width - w), random.nextDouble() * (height - h));
+        }
+        return canvas;
+    }
+
+    // Method to create a right canvas sized so one component pixel is one drawing pixel
+    private static RightCanvas createRightCanvas() {
+        RightCanvas canvas = new RightCanvas();
+        canvas.setSize(canvas.getPreferredSize());
+        canvas.setPenColor(Color.BLUE);
+        canvas.setPenSize(4);
+        return canvas;
+    }
+
+    // Method to draw a zigzag stroke through the mouse handlers, shifted by its index so strokes cover different tiles
+    private static void drawStroke(RightCanvas canvas, int index, int points) {
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        int top = 20 + (index * 37) % Math.max(1, height - 140);
+        int x = 20;
+        dispatchMouse(canvas, MouseEvent.MOUSE_PRESSED, x, top);
+        for (int i = 1; i < points; i++) {
+            x = 20 + (i * 7) % Math.max(1, width - 40);
+            int y = top + ((i % 16) < 8 ? (i % 8) * 12 : (8 - i % 8) * 12);
+            dispatchMouse(canvas, MouseEvent.MOUSE_DRAGGED, x, y);
+        }
+        dispatchMouse(canvas, MouseEvent.MOUSE_RELEASED, x, top);
+    }
+
+    // Method to deliver a left-button mouse event straight to a component's listeners
+    private static void dispatchMouse(Component component, int id, int x, int y) {
+        int modifiers = id == MouseEvent.MOUSE_MOVED ? 0 : InputEvent.BUTTON1_DOWN_MASK;
+        int button = id == MouseEvent.MOUSE_MOVED || id == MouseEvent.MOUSE_DRAGGED ? MouseEvent.NOBUTTON : MouseEvent.BUTTON1;
+        if (id == MouseEvent.MOUSE_RELEASED) modifiers = 0;
+        component.dispatchEvent(new MouseEvent(component, id, System.currentTimeMillis(), modifiers, x, y, 1, false, button));
+    }
+}
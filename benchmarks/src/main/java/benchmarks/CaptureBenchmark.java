@@ -0,0 +1,49 @@
+// Times LeftCanvas.captureCanvas, the full-resolution render used by the composer and for saving.
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class CaptureBenchmark {
+    @Param({"800x600", "1920x1080", "3840x2160"})
+    public String canvas;
+
+    @Param({"10", "100", "1000"})
+    public int items;
+
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String[] size = canvas.split("x");
+        workload = Workloads.load().captureCanvas(Integer.parseInt(size[0]), Integer.parseInt(size[1]), items);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object captureCanvas() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,52 @@
+// Times whole RightCanvas pen strokes through the mouse handlers, including the repaint that shows each one.
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Xmx2g"})
+public class StrokeBenchmark {
+    @Param({"50", "500"})
+    public int points;
+
+    private Workloads workloads;
+    private Workload workload;
+
+    @Setup(Level.Trial)
+    public void loadAssets() {
+        workloads = Workloads.load();
+    }
+
+    // A fresh canvas every iteration keeps the undo history and stroke log from growing through the run
+    @Setup(Level.Iteration)
+    public void setUp() {
+        workload = workloads.stroke(points);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws Exception {
+        workload.close();
+    }
+
+    @Benchmark
+    public Object stroke() throws Exception {
+        return workload.run();
+    }
+}
@@ -0,0 +1,12 @@
+// One prepared operation a benchmark times, with the state it runs against already built.
+package benchmarks;
+
+public interface Workload extends AutoCloseable {
+    // Method to perform the operation once and return its result, which the benchmark hands to JMH's blackhole
+    Object run() throws Exception;
+
+    // Method to release what the workload holds, such as the files a save writes to
+    @Override
+    default void close() throws Exception {
+    }
+}
@@ -0,0 +1,35 @@
+// Builds the workloads the benchmarks time; implemented next to the application classes, which live in the default package.
+package benchmarks;
+
+public interface Workloads {
+    // Name of the implementation. JMH only accepts benchmarks in a named package, and code in a named
+    // package cannot refer to the application's default-package classes, so it is loaded by name
+    String IMPLEMENTATION = "StudioWorkloads";
+
+    // Method to capture a left canvas of the given size holding a number of items
+    Workload captureCanvas(int width, int height, int items);
+
+    // Method to hit-test a left canvas through its mouse handlers; each run tests the given number of points
+    Workload hitTest(int items, int points);
+
+    // Method to move, rotate and scale every item of a left canvas tiled with copies of one image
+    Workload bulkTransform(int items);
+
+    // Method to rotate a captured composition by quarter turns
+    Workload rotate(int width, int height, int quarterTurns);
+
+    // Method to draw whole pen strokes on a fresh right canvas, including the repaint that shows each one
+    Workload stroke(int points);
+
+    // Method to save a canvas, "LeftCanvas" or "RightCanvas", to a temporary file in a format
+    Workload save(String canvas, String format);
+
+    // Method to get the implementation, loading the bundled images it builds its fixtures from
+    static Workloads load() {
+        try {
+            return (Workloads) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException ex) {
+            throw new IllegalStateException("Cannot create " + IMPLEMENTATION, ex);
+        }
+    }
+}